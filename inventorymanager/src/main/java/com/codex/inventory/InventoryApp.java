@@ -3,48 +3,198 @@ package com.codex.inventory;
 import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.NumberFormat;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.OptionalInt;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Primary Swing UI for the grocery inventory manager.
  */
 public final class InventoryApp extends JFrame {
+    private static final int LOAD_BATCH_SIZE = 2_000;
+    private static final int PATCH_LIMIT = 200;
+    private static final int HISTORY_DAYS = 90;
+    private static final String SEARCH_HELP =
+            "Words match names and categories; also category:Dairy qty<10 expires<7d price>5 sort:value, OR, -word";
     private final InventoryManager manager;
+    private final StockHistory history;
+    private final ReorderForecaster forecaster;
     private final InventoryTableModel tableModel = new InventoryTableModel();
-    private final JTable table = new JTable(tableModel);
+    private final InventoryMetrics metrics = InventoryMetrics.global();
+    private final JTable table = new JTable(tableModel) {
+        @Override
+        protected void paintComponent(Graphics g) {
+            metrics.increment("table.paint");
+            super.paintComponent(g);
+        }
+    };
     private final JTextField searchField = new JTextField(20);
     private final JComboBox<String> categoryFilter = new JComboBox<>();
     private final JCheckBox lowStockOnly = new JCheckBox("Low stock only");
     private final JSpinner lowStockSpinner = new JSpinner(new SpinnerNumberModel(5, 1, 1000, 1));
     private final JLabel statusLabel = new JLabel("Ready");
+    private final JProgressBar loadingBar = new JProgressBar();
+    private final List<AbstractButton> editButtons = new ArrayList<>();
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    /** Loaded items a refresh during loading already put in the table, so their queued batches are skipped. */
+    private int rowsShownWhileLoading;
+    /** Version of the newest commit patched into the table. */
+    private long appliedVersion;
+    /** Merges outside edits to the data file once loading completes; closed with the window. */
+    private InventoryFileWatcher watcher;
     private final InventoryTableCellRenderer renderer = new InventoryTableCellRenderer(tableModel);
     private final NumberFormat currency = NumberFormat.getCurrencyInstance(Locale.US);
 
     public InventoryApp() {
         super("Grocery Inventory Manager");
-        this.manager = new InventoryManager(Paths.get("data", "inventory-data.csv"));
+        this.manager = createManager(Paths.get("data", "inventory-data.csv"));
+        this.history = StockHistory.open(Paths.get("data", "history"));
+        manager.addChangeListener(history);
+        this.forecaster = new ReorderForecaster(history);
+        tableModel.setForecaster(forecaster);
         buildUi();
         refreshCategoryFilter();
         refreshTable();
+        manager.addChangeListener(events -> {
+            if (events.size() > PATCH_LIMIT) {
+                scheduleFullRefresh();
+            } else if (SwingUtilities.isEventDispatchThread()) {
+                applyChanges(events);
+            } else {
+                SwingUtilities.invokeLater(() -> applyChanges(events));
+            }
+        });
+        startLoading();
+    }
+
+    /**
+     * Keeps items off the heap when started with {@code -Dinventory.offHeap=true}; adding
+     * {@code -Dinventory.arena=<file>} maps item names from that scratch file. With
+     * {@code -Dinventory.residentMegabytes=<n>} items are paged from disk instead and at most that much of
+     * them is held in memory.
+     */
+    private static InventoryManager createManager(Path dataFile) {
+        long residentMegabytes = Long.getLong("inventory.residentMegabytes", 0);
+        if (residentMegabytes > 0) {
+            Path pages = dataFile.toAbsolutePath().resolveSibling("pages");
+            return InventoryManager.offHeap(dataFile, OffHeapItemStore.paged(pages, residentMegabytes << 20));
+        }
+        if (!Boolean.getBoolean("inventory.offHeap")) {
+            return InventoryManager.deferred(dataFile);
+        }
+        String arena = System.getProperty("inventory.arena");
+        OffHeapItemStore store = arena == null ? OffHeapItemStore.allocate() : OffHeapItemStore.mapped(Paths.get(arena));
+        return InventoryManager.offHeap(dataFile, store);
+    }
+
+    /**
+     * Reads the data file on a background thread and streams each batch into the table, filtered
+     * against whatever search and category the user has already picked.
+     */
+    private void startLoading() {
+        setEditingEnabled(false);
+        loadingBar.setIndeterminate(true);
+        loadingBar.setStringPainted(true);
+        loadingBar.setString("Loading…");
+        loadingBar.setVisible(true);
+        new SwingWorker<Integer, List<InventoryItem>>() {
+            private int loadedRows;
+
+            @Override
+            protected Integer doInBackground() {
+                return manager.load(LOAD_BATCH_SIZE, batch -> publish(batch));
+            }
+
+            @Override
+            protected void process(List<List<InventoryItem>> batches) {
+                if (manager.isLoaded()) {
+                    return;
+                }
+                for (List<InventoryItem> batch : batches) {
+                    int shown = Math.min(batch.size(), Math.max(0, rowsShownWhileLoading - loadedRows));
+                    loadedRows += batch.size();
+                    if (!manager.isOffHeap() && shown < batch.size()) {
+                        // Off-heap items appear once loading completes rather than all being copied here.
+                        tableModel.addItems(applyFilters(batch.subList(shown, batch.size())));
+                    }
+                    for (InventoryItem item : batch) {
+                        addCategoryOption(item.getCategory());
+                    }
+                }
+                loadingBar.setString("Loading… " + loadedRows + " items");
+            }
+
+            @Override
+            protected void done() {
+                loadingBar.setVisible(false);
+                try {
+                    get();
+                    setEditingEnabled(true);
+                    recomputeForecasts();
+                    watcher = InventoryFileWatcher.start(manager, merged ->
+                            SwingUtilities.invokeLater(() -> setStatus("Merged " + merged + " items changed outside the app")));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(InventoryApp.this, "Unable to load inventory: " + e.getCause().getMessage(), "Load error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Rebuilds depletion rates from the full history off the EDT, then repaints the stock-out column.
+     */
+    private void recomputeForecasts() {
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                forecaster.recompute();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                tableModel.setForecaster(forecaster);
+            }
+        }.execute();
+    }
+
+    private void setEditingEnabled(boolean enabled) {
+        for (AbstractButton button : editButtons) {
+            button.setEnabled(enabled);
+        }
     }
 
     private void buildUi() {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (watcher != null) {
+                    watcher.close();
+                }
+            }
+        });
         setLayout(new BorderLayout(12, 12));
         setMinimumSize(new Dimension(960, 640));
 
@@ -54,6 +204,7 @@ public final class InventoryApp extends JFrame {
 
         setJMenuBar(buildMenuBar());
         renderer.setLowStockThreshold((Integer) lowStockSpinner.getValue());
+        manager.setLowStockThreshold((Integer) lowStockSpinner.getValue());
     }
 
     private JMenuBar buildMenuBar() {
@@ -65,7 +216,22 @@ public final class InventoryApp extends JFrame {
         JMenuItem quit = new JMenuItem("Exit");
         quit.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Q, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
         quit.addActionListener(e -> dispatchEvent(new java.awt.event.WindowEvent(this, java.awt.event.WindowEvent.WINDOW_CLOSING)));
+        JMenuItem locations = new JMenuItem("Locations…");
+        locations.addActionListener(e -> showLocations());
+        editButtons.add(locations);
+        JMenuItem purchaseOrder = new JMenuItem("Purchase order report…");
+        purchaseOrder.addActionListener(e -> showPurchaseOrder());
+        JMenuItem backup = new JMenuItem("Save compressed backup…");
+        backup.addActionListener(e -> saveBackup());
+        JMenuItem importCsv = new JMenuItem("Import supplier CSV…");
+        importCsv.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_I, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        importCsv.addActionListener(e -> importSupplierCsv());
+        editButtons.add(importCsv);
+        file.add(importCsv);
         file.add(export);
+        file.add(backup);
+        file.add(purchaseOrder);
+        file.add(locations);
         file.addSeparator();
         file.add(quit);
         bar.add(file);
@@ -135,6 +301,7 @@ public final class InventoryApp extends JFrame {
         lowStockOnly.addActionListener(e -> refreshTable());
         lowStockSpinner.addChangeListener(e -> {
             renderer.setLowStockThreshold((Integer) lowStockSpinner.getValue());
+            manager.setLowStockThreshold((Integer) lowStockSpinner.getValue());
             refreshTable();
         });
     }
@@ -148,6 +315,7 @@ public final class InventoryApp extends JFrame {
         TableRowSorter<InventoryTableModel> sorter = new TableRowSorter<>(tableModel);
         sorter.setComparator(2, Comparator.comparingInt(value -> (Integer) value));
         sorter.setComparator(4, Comparator.comparingDouble(value -> (Double) value));
+        sorter.setComparator(7, Comparator.comparingDouble(value -> ((ReorderForecaster.Forecast) value).getDaysOfStock()));
         table.setRowSorter(sorter);
 
         table.setDefaultRenderer(Object.class, renderer);
@@ -156,11 +324,19 @@ public final class InventoryApp extends JFrame {
 
         JToolBar toolbar = new JToolBar();
         toolbar.setFloatable(false);
-        toolbar.add(createButton("Add", e -> onAdd()));
-        toolbar.add(createButton("Edit", e -> onEdit()));
-        toolbar.add(createButton("Restock", e -> onRestock()));
-        toolbar.add(createButton("Remove", e -> onRemove()));
+        editButtons.add(createButton("Add", e -> onAdd()));
+        editButtons.add(createButton("Edit", e -> onEdit()));
+        editButtons.add(createButton("Restock", e -> onRestock()));
+        editButtons.add(createButton("Receive by scan", e -> new InventoryReceivingDialog(this, manager, this::setStatus).setVisible(true)));
+        editButtons.add(createButton("Transfer", e -> onTransfer()));
+        editButtons.add(createButton("Remove", e -> onRemove()));
+        for (AbstractButton button : editButtons) {
+            if (button instanceof JButton) {
+                toolbar.add(button);
+            }
+        }
         toolbar.addSeparator();
+        toolbar.add(createButton("History", e -> showHistory()));
         toolbar.add(createButton("Export CSV", e -> exportVisibleRows()));
 
         JPanel wrapper = new JPanel(new BorderLayout());
@@ -175,6 +351,8 @@ public final class InventoryApp extends JFrame {
         footer.setBorder(BorderFactory.createEmptyBorder(8, 12, 12, 12));
         statusLabel.setFont(statusLabel.getFont().deriveFont(Font.BOLD));
         footer.add(statusLabel, BorderLayout.WEST);
+        loadingBar.setVisible(false);
+        footer.add(loadingBar, BorderLayout.EAST);
         return footer;
     }
 
@@ -198,9 +376,15 @@ public final class InventoryApp extends JFrame {
                 data.price(),
                 data.expiration()
         );
-        manager.add(item);
-        refreshCategoryFilter();
-        refreshTable();
+        try {
+            if (!data.sku().isEmpty()) {
+                item = item.withSku(data.sku());
+            }
+            manager.add(item);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Add Item", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
         setStatus("Added " + item.getName());
     }
 
@@ -222,9 +406,15 @@ public final class InventoryApp extends JFrame {
                 data.price(),
                 data.expiration()
         );
-        manager.update(selected.getId(), updated);
-        refreshCategoryFilter();
-        refreshTable();
+        try {
+            if (!data.sku().equals(selected.getSku())) {
+                updated = updated.withSku(data.sku());
+            }
+            manager.update(selected.getId(), updated);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Edit Item", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
         setStatus("Updated " + updated.getName());
     }
 
@@ -233,23 +423,139 @@ public final class InventoryApp extends JFrame {
         if (selected == null) {
             return;
         }
-        String input = JOptionPane.showInputDialog(this, "Add units to " + selected.getName(), "Restock", JOptionPane.PLAIN_MESSAGE);
-        if (input == null || input.isBlank()) {
+        JComboBox<String> location = new JComboBox<>(manager.getLocations().toArray(new String[0]));
+        JTextField amount = new JTextField(8);
+        JPanel form = new JPanel(new GridLayout(0, 2, 8, 4));
+        if (location.getItemCount() > 1) {
+            form.add(new JLabel("Location"));
+            form.add(location);
+        }
+        form.add(new JLabel("Add units to " + selected.getName()));
+        form.add(amount);
+        if (JOptionPane.showConfirmDialog(this, form, "Restock", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION
+                || amount.getText().isBlank()) {
             return;
         }
         try {
-            int amount = Integer.parseInt(input.trim());
-            if (amount <= 0) {
+            int units = Integer.parseInt(amount.getText().trim());
+            if (units <= 0) {
                 throw new NumberFormatException();
             }
-            InventoryItem restocked = manager.restock(selected.getId(), amount);
-            refreshTable();
-            setStatus("Restocked " + restocked.getName() + " by +" + amount);
+            String target = (String) location.getSelectedItem();
+            InventoryItem restocked = manager.restock(target, selected.getId(), units);
+            setStatus("Restocked " + restocked.getName() + " by +" + units + " at " + target);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Enter a positive whole number.", "Invalid amount", JOptionPane.WARNING_MESSAGE);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Restock", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    private void onTransfer() {
+        InventoryItem selected = getSelectedItem();
+        if (selected == null) {
+            return;
+        }
+        String[] names = manager.getLocations().toArray(new String[0]);
+        if (names.length < 2) {
+            JOptionPane.showMessageDialog(this, "Add a second location under File → Locations… first.", "Transfer", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JComboBox<String> from = new JComboBox<>(names);
+        JComboBox<String> to = new JComboBox<>(names);
+        to.setSelectedIndex(1);
+        JTextField amount = new JTextField(8);
+        JLabel available = new JLabel();
+        Runnable showAvailable = () -> available.setText(manager.quantityAt((String) from.getSelectedItem(), selected.getId()) + " on hand");
+        from.addActionListener(e -> showAvailable.run());
+        showAvailable.run();
+        JPanel form = new JPanel(new GridLayout(0, 2, 8, 4));
+        form.add(new JLabel("From"));
+        form.add(from);
+        form.add(new JLabel());
+        form.add(available);
+        form.add(new JLabel("To"));
+        form.add(to);
+        form.add(new JLabel("Units"));
+        form.add(amount);
+        if (JOptionPane.showConfirmDialog(this, form, "Transfer " + selected.getName(), JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        try {
+            int units = Integer.parseInt(amount.getText().trim());
+            manager.transfer(selected.getId(), (String) from.getSelectedItem(), (String) to.getSelectedItem(), units);
+            setStatus("Moved " + units + " " + selected.getName() + " from " + from.getSelectedItem() + " to " + to.getSelectedItem());
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Enter a positive whole number.", "Invalid amount", JOptionPane.WARNING_MESSAGE);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Transfer", JOptionPane.WARNING_MESSAGE);
         }
     }
 
+    /**
+     * Shows units, value and low-stock counts per location and for the chain, and lets the user add locations.
+     */
+    private void showLocations() {
+        String[] columns = {"Location", "Items", "Units", "Value", "Low stock"};
+        DefaultTableModel rollups = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        Runnable reload = () -> {
+            rollups.setRowCount(0);
+            for (LocationRollup rollup : manager.getLocationRollups()) {
+                rollups.addRow(new Object[]{
+                        rollup.isChain() ? "All locations" : rollup.getLocation(),
+                        rollup.getItemCount(),
+                        rollup.getUnits(),
+                        currency.format(rollup.getValue()),
+                        rollup.getLowStockCount()
+                });
+            }
+        };
+        reload.run();
+        JTable view = new JTable(rollups);
+        JScrollPane pane = new JScrollPane(view);
+        pane.setPreferredSize(new Dimension(520, 240));
+        Object[] options = {"Add location…", "Close"};
+        while (JOptionPane.showOptionDialog(this, pane, "Locations", JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE,
+                null, options, options[1]) == 0) {
+            String name = JOptionPane.showInputDialog(this, "Location name", "Add location", JOptionPane.PLAIN_MESSAGE);
+            if (name != null && !name.isBlank()) {
+                try {
+                    manager.addLocation(name);
+                    reload.run();
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(this, ex.getMessage(), "Add location", JOptionPane.WARNING_MESSAGE);
+                }
+            }
+        }
+    }
+
+    private void showHistory() {
+        InventoryItem selected = getSelectedItem();
+        if (selected == null) {
+            return;
+        }
+        LocalDateTime to = LocalDateTime.now();
+        LocalDateTime from = to.minusDays(HISTORY_DAYS);
+        OptionalInt opening = history.quantityAt(selected.getId(), from);
+        List<StockHistory.Movement> movements = history.movements(selected.getId(), from, to.plusSeconds(1));
+        StringBuilder text = new StringBuilder();
+        text.append("Opening quantity: ").append(opening.isPresent() ? String.valueOf(opening.getAsInt()) : "not recorded").append('\n');
+        for (StockHistory.Movement movement : movements) {
+            text.append(movement.getTimestamp().withNano(0).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                    .append("  ").append(movement.getDelta() >= 0 ? "+" : "").append(movement.getDelta())
+                    .append("  → ").append(movement.getQuantity()).append('\n');
+        }
+        JTextArea area = new JTextArea(text.toString(), Math.min(20, movements.size() + 1), 36);
+        area.setEditable(false);
+        JOptionPane.showMessageDialog(this, new JScrollPane(area),
+                selected.getName() + " – last " + HISTORY_DAYS + " days", JOptionPane.PLAIN_MESSAGE);
+    }
+
     private void onRemove() {
         InventoryItem selected = getSelectedItem();
         if (selected == null) {
@@ -263,8 +569,6 @@ public final class InventoryApp extends JFrame {
         );
         if (confirm == JOptionPane.YES_OPTION) {
             manager.remove(selected.getId());
-            refreshCategoryFilter();
-            refreshTable();
             setStatus("Removed " + selected.getName());
         }
     }
@@ -295,11 +599,143 @@ public final class InventoryApp extends JFrame {
         }
     }
 
+    private void importSupplierCsv() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path source = chooser.getSelectedFile().toPath();
+        Object[] options = {"Set quantities", "Add to quantities", "Cancel"};
+        int choice = JOptionPane.showOptionDialog(
+                this,
+                "Do the quantities in " + source.getFileName() + " replace on-hand stock or add to it?",
+                "Import supplier CSV",
+                JOptionPane.YES_NO_CANCEL_OPTION,
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                options,
+                options[0]
+        );
+        if (choice != 0 && choice != 1) {
+            return;
+        }
+        InventoryImporter.QuantityMode mode = choice == 0 ? InventoryImporter.QuantityMode.SET : InventoryImporter.QuantityMode.ADD;
+        setEditingEnabled(false);
+        statusLabel.setText("Importing " + source.getFileName() + "…");
+        new SwingWorker<InventoryImporter.ImportReport, Void>() {
+            @Override
+            protected InventoryImporter.ImportReport doInBackground() throws IOException {
+                return new InventoryImporter(manager).importCsv(source, mode);
+            }
+
+            @Override
+            protected void done() {
+                setEditingEnabled(true);
+                try {
+                    showImportReport(get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(InventoryApp.this, "Unable to import: " + e.getCause().getMessage(), "Import error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private void showImportReport(InventoryImporter.ImportReport report) {
+        StringBuilder message = new StringBuilder(String.format(
+                "Read %d rows in %.1f s: %d added, %d updated, %d rejected.",
+                report.getRows(),
+                report.getElapsedMillis() / 1000.0,
+                report.getAdded(),
+                report.getUpdated(),
+                report.getRejected()
+        ));
+        List<InventoryImporter.RowError> errors = report.getErrors();
+        for (int i = 0; i < Math.min(20, errors.size()); i++) {
+            message.append('\n').append(errors.get(i));
+        }
+        if (report.getRejected() > 20) {
+            message.append("\n… and ").append(report.getRejected() - 20).append(" more");
+        }
+        JOptionPane.showMessageDialog(this, message.toString(), "Import complete",
+                report.getRejected() == 0 ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+        setStatus("Imported " + (report.getAdded() + report.getUpdated()) + " rows");
+    }
+
+    private void saveBackup() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("inventory-backup.invs"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path target = chooser.getSelectedFile().toPath();
+        try (InventoryManager.Pin pin = manager.pin()) {
+            manager.storage().saveSnapshot(target, pin.snapshot(), true);
+            setStatus("Backed up " + pin.snapshot().size() + " items to " + target.getFileName());
+        } catch (IllegalStateException e) {
+            JOptionPane.showMessageDialog(this, "Unable to back up: " + e.getMessage(), "Backup error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Lists items at or below their forecast reorder point and offers to save the list as a CSV order.
+     */
+    private void showPurchaseOrder() {
+        List<ReorderForecaster.Forecast> due = forecaster.reorderReport(manager);
+        if (due.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No item is at its reorder point.", "Purchase order", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add("Name,Category,Unit,On Hand,Daily Use,Stock-out,Order Quantity,Estimated Cost");
+        double total = 0;
+        StringBuilder text = new StringBuilder();
+        for (ReorderForecaster.Forecast forecast : due) {
+            InventoryItem item = forecast.getItem();
+            double cost = forecast.getSuggestedOrder() * item.getPrice();
+            total += cost;
+            String stockOut = forecast.getStockOutDate() == null ? "" : DateTimeFormatter.ISO_LOCAL_DATE.format(forecast.getStockOutDate());
+            lines.add(String.join(",",
+                    escapeCsv(item.getName()),
+                    escapeCsv(item.getCategory()),
+                    escapeCsv(item.getUnit()),
+                    Integer.toString(item.getQuantity()),
+                    String.format(Locale.US, "%.2f", forecast.getDailyRate()),
+                    stockOut,
+                    Integer.toString(forecast.getSuggestedOrder()),
+                    String.format(Locale.US, "%.2f", cost)
+            ));
+            text.append(String.format("%-28s %6d %-6s  out %s  (%s)%n", item.getName(), forecast.getSuggestedOrder(),
+                    item.getUnit(), stockOut.isEmpty() ? "now" : stockOut, currency.format(cost)));
+        }
+        text.append(String.format("%n%d items, estimated %s", due.size(), currency.format(total)));
+        JTextArea area = new JTextArea(text.toString(), Math.min(20, due.size() + 2), 64);
+        area.setEditable(false);
+        area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, area.getFont().getSize()));
+        Object[] options = {"Save CSV…", "Close"};
+        int choice = JOptionPane.showOptionDialog(this, new JScrollPane(area), "Purchase order", JOptionPane.DEFAULT_OPTION,
+                JOptionPane.PLAIN_MESSAGE, null, options, options[1]);
+        if (choice != 0) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("purchase-order.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            Files.write(chooser.getSelectedFile().toPath(), lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Unable to save: " + e.getMessage(), "Export error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private List<String> buildExportLines() {
         DateTimeFormatter dateFormatter = DateTimeFormatter.ISO_LOCAL_DATE;
         DateTimeFormatter updatedFormatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
         List<String> lines = new ArrayList<>();
-        lines.add("Name,Category,Quantity,Unit,Price,Expiration,Last Updated");
+        lines.add("Name,Category,SKU,Quantity,Unit,Price,Expiration,Last Updated");
         for (int viewRow = 0; viewRow < table.getRowCount(); viewRow++) {
             int modelRow = table.convertRowIndexToModel(viewRow);
             InventoryItem item = tableModel.getItemAt(modelRow);
@@ -307,6 +743,7 @@ public final class InventoryApp extends JFrame {
             lines.add(String.join(",",
                     escapeCsv(item.getName()),
                     escapeCsv(item.getCategory()),
+                    escapeCsv(item.getSku()),
                     Integer.toString(item.getQuantity()),
                     escapeCsv(item.getUnit()),
                     String.format(Locale.US, "%.2f", item.getPrice()),
@@ -327,28 +764,190 @@ public final class InventoryApp extends JFrame {
     }
 
     private void refreshTable() {
-        List<InventoryItem> filtered = applyFilters(manager.getItems());
-        tableModel.setItems(filtered);
-        double totalValue = filtered.stream().mapToDouble(item -> item.getPrice() * item.getQuantity()).sum();
-        statusLabel.setText(String.format("%d items • %s on hand", filtered.size(), currency.format(totalValue)));
+        InventoryEvents.TableRefreshEvent event = new InventoryEvents.TableRefreshEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int selectedRow = table.getSelectedRow();
+        InventoryItem selected = selectedRow < 0 ? null : tableModel.getItemAt(table.convertRowIndexToModel(selectedRow));
+        List<InventoryItem> filtered;
+        if (manager.isLoaded() || manager.isOffHeap()) {
+            InventoryQuery.Result result = runQuery();
+            filtered = result.getItems();
+            tableModel.setItems(filtered, result.getTotalValue());
+        } else {
+            // The snapshot already holds batches still queued for the loader's process(); note how far it
+            // reaches so they are not added a second time.
+            InventorySnapshot loading = manager.getItems();
+            filtered = applyFilters(loading);
+            rowsShownWhileLoading = loading.size();
+            tableModel.setItems(filtered);
+        }
+        if (selected != null) {
+            reselect(selected.getId());
+        }
+        showTotals();
+        metrics.recordTime("ui.refreshTable", System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.rows = filtered.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Selects the row of item {@code id} again after the rows were replaced, if it is still shown.
+     */
+    private void reselect(UUID id) {
+        int row = manager.findById(id).map(tableModel::indexOf).orElse(-1);
+        int viewRow = row < 0 ? -1 : table.convertRowIndexToView(row);
+        if (viewRow >= 0) {
+            table.getSelectionModel().setSelectionInterval(viewRow, viewRow);
+        }
+    }
+
+    /**
+     * Runs the current query through the manager so index terms can skip the full scan.
+     */
+    private InventoryQuery.Result runQuery() {
+        InventoryEvents.FilterEvent event = new InventoryEvents.FilterEvent();
+        event.begin();
+        long start = System.nanoTime();
+        InventoryQuery query = currentQuery();
+        InventoryQuery.Result result = manager.query(query);
+        recordFilter(event, start, query, result.getPlan(), manager.getItems().size(), result.getItems().size());
+        return result;
     }
 
+    /**
+     * Filters a batch that is still loading, before the manager is ready to answer queries.
+     */
     private List<InventoryItem> applyFilters(List<InventoryItem> items) {
-        String search = searchField.getText().strip().toLowerCase(Locale.ROOT);
-        String chosenCategory = Optional.ofNullable((String) categoryFilter.getSelectedItem())
-                .filter(s -> !s.equalsIgnoreCase("All categories"))
-                .orElse(null);
-        boolean onlyLowStock = lowStockOnly.isSelected();
-        int threshold = (Integer) lowStockSpinner.getValue();
-
-        return items.stream()
-                .filter(item -> search.isBlank()
-                        || item.getName().toLowerCase(Locale.ROOT).contains(search)
-                        || item.getCategory().toLowerCase(Locale.ROOT).contains(search))
-                .filter(item -> chosenCategory == null || item.getCategory().equalsIgnoreCase(chosenCategory))
-                .filter(item -> !onlyLowStock || item.getQuantity() <= threshold)
-                .sorted(Comparator.comparing(InventoryItem::getName, String.CASE_INSENSITIVE_ORDER))
-                .collect(Collectors.toList());
+        InventoryEvents.FilterEvent event = new InventoryEvents.FilterEvent();
+        event.begin();
+        long start = System.nanoTime();
+        InventoryQuery query = currentQuery();
+        List<InventoryItem> filtered = query.filter(items);
+        recordFilter(event, start, query, "batch", items.size(), filtered.size());
+        return filtered;
+    }
+
+    private void recordFilter(InventoryEvents.FilterEvent event, long start, InventoryQuery query, String plan, int inputSize, int resultSize) {
+        metrics.recordTime("ui.applyFilters", System.nanoTime() - start);
+        metrics.recordValue("ui.applyFilters.results", resultSize);
+        event.end();
+        if (event.shouldCommit()) {
+            event.search = searchField.getText();
+            event.category = (String) categoryFilter.getSelectedItem();
+            event.lowStockOnly = lowStockOnly.isSelected();
+            event.query = query.toString();
+            event.plan = plan;
+            event.inputSize = inputSize;
+            event.resultSize = resultSize;
+            event.commit();
+        }
+    }
+
+    /**
+     * Combines the search field's query with the category and low-stock controls. Text that does not parse
+     * falls back to a plain substring search and the problem is shown on the field.
+     */
+    private InventoryQuery currentQuery() {
+        String text = searchField.getText();
+        InventoryQuery query;
+        try {
+            query = InventoryQuery.parse(text);
+            searchField.setForeground(UIManager.getColor("TextField.foreground"));
+            searchField.setToolTipText(SEARCH_HELP);
+        } catch (IllegalArgumentException ex) {
+            query = InventoryQuery.matching(text);
+            searchField.setForeground(Color.RED.darker());
+            searchField.setToolTipText(ex.getMessage());
+        }
+        String chosenCategory = (String) categoryFilter.getSelectedItem();
+        if (chosenCategory != null && !chosenCategory.equalsIgnoreCase("All categories")) {
+            query = query.and(InventoryQuery.inCategory(chosenCategory));
+        }
+        if (lowStockOnly.isSelected()) {
+            query = query.and(InventoryQuery.quantityAtMost((Integer) lowStockSpinner.getValue()));
+        }
+        return query;
+    }
+
+    /**
+     * Patches the table and category filter from manager events instead of rebuilding them.
+     * <p>
+     * Commits made on the EDT are applied at once while those from other threads queue behind earlier events,
+     * so a commit may arrive after a newer one; patching it would put older items back, so the table is
+     * rebuilt from the manager instead.
+     */
+    private void applyChanges(List<InventoryChangeEvent> events) {
+        long version = events.get(0).getVersion();
+        if (version < appliedVersion) {
+            scheduleFullRefresh();
+            return;
+        }
+        appliedVersion = version;
+        InventoryQuery query = currentQuery();
+        if (!query.isNameOrdered() || manager.isOffHeap() && tableModel.isSnapshotView()) {
+            // Rows are only patched in name order; other orders are rebuilt, as is an off-heap snapshot,
+            // which patching would copy item by item.
+            scheduleFullRefresh();
+            return;
+        }
+        for (InventoryChangeEvent event : events) {
+            switch (event.getType()) {
+                case ITEM_ADDED:
+                case ITEM_UPDATED:
+                case ITEM_REMOVED:
+                    patchRow(event.getPrevious(), event.getCurrent(), query);
+                    break;
+                case CATEGORY_ADDED:
+                    addCategoryOption(event.getCategory());
+                    break;
+                case CATEGORY_REMOVED:
+                    removeCategoryOption(event.getCategory());
+                    break;
+                case RELOADED:
+                    refreshCategoryFilter();
+                    refreshTable();
+                    return;
+                default:
+                    break;
+            }
+        }
+        showTotals();
+    }
+
+    private void patchRow(InventoryItem previous, InventoryItem current, InventoryQuery query) {
+        int row = tableModel.indexOf(current != null ? current.getId() : previous.getId());
+        boolean visible = current != null && query.test(current);
+        if (row >= 0 && visible && tableModel.getItemAt(row).getName().equalsIgnoreCase(current.getName())) {
+            tableModel.replaceAt(row, current);
+            return;
+        }
+        if (row >= 0) {
+            tableModel.removeAt(row);
+        }
+        if (visible) {
+            tableModel.insertSorted(current);
+        }
+    }
+
+    /**
+     * Coalesces bulk changes from any thread into a single rebuild on the EDT.
+     */
+    private void scheduleFullRefresh() {
+        if (refreshPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                refreshPending.set(false);
+                refreshCategoryFilter();
+                refreshTable();
+            });
+        }
+    }
+
+    private void showTotals() {
+        statusLabel.setText(String.format("%d items • %s on hand", tableModel.getRowCount(), currency.format(tableModel.getTotalValue())));
     }
 
     private void refreshCategoryFilter() {
@@ -366,11 +965,37 @@ public final class InventoryApp extends JFrame {
         }
     }
 
+    /**
+     * Inserts {@code category} into the filter combo in sorted position without disturbing the selection.
+     */
+    private void addCategoryOption(String category) {
+        if (category.isBlank()) {
+            return;
+        }
+        DefaultComboBoxModel<String> model = (DefaultComboBoxModel<String>) categoryFilter.getModel();
+        if (model.getIndexOf(category) >= 0) {
+            return;
+        }
+        int index = 1;
+        while (index < model.getSize() && String.CASE_INSENSITIVE_ORDER.compare(model.getElementAt(index), category) < 0) {
+            index++;
+        }
+        model.insertElementAt(category, index);
+    }
+
+    private void removeCategoryOption(String category) {
+        if (category.equals(categoryFilter.getSelectedItem())) {
+            categoryFilter.setSelectedIndex(0);
+        }
+        categoryFilter.removeItem(category);
+    }
+
     private void setStatus(String message) {
         statusLabel.setText(message + " • " + currency.format(tableModel.getTotalValue()) + " in stock");
     }
 
     public static void main(String[] args) {
+        InventoryMetrics.global().registerMBean();
         SwingUtilities.invokeLater(() -> {
             try {
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -0,0 +1,99 @@
+package com.codex.inventory;
+
+/**
+ * Describes one change committed by {@link InventoryManager}.
+ */
+public final class InventoryChangeEvent {
+    public enum Type {
+        ITEM_ADDED,
+        ITEM_UPDATED,
+        ITEM_REMOVED,
+        CATEGORY_ADDED,
+        CATEGORY_REMOVED,
+        /** Too much changed to describe item by item; listeners should rebuild their views. */
+        RELOADED
+    }
+
+    private final Type type;
+    private final long version;
+    private final InventoryItem previous;
+    private final InventoryItem current;
+    private final String category;
+
+    private InventoryChangeEvent(Type type, long version, InventoryItem previous, InventoryItem current, String category) {
+        this.type = type;
+        this.version = version;
+        this.previous = previous;
+        this.current = current;
+        this.category = category;
+    }
+
+    static InventoryChangeEvent added(long version, InventoryItem item) {
+        return new InventoryChangeEvent(Type.ITEM_ADDED, version, null, item, item.getCategory());
+    }
+
+    static InventoryChangeEvent updated(long version, InventoryItem previous, InventoryItem current) {
+        return new InventoryChangeEvent(Type.ITEM_UPDATED, version, previous, current, current.getCategory());
+    }
+
+    static InventoryChangeEvent removed(long version, InventoryItem item) {
+        return new InventoryChangeEvent(Type.ITEM_REMOVED, version, item, null, item.getCategory());
+    }
+
+    static InventoryChangeEvent categoryAdded(long version, String category) {
+        return new InventoryChangeEvent(Type.CATEGORY_ADDED, version, null, null, category);
+    }
+
+    static InventoryChangeEvent categoryRemoved(long version, String category) {
+        return new InventoryChangeEvent(Type.CATEGORY_REMOVED, version, null, null, category);
+    }
+
+    static InventoryChangeEvent reloaded(long version) {
+        return new InventoryChangeEvent(Type.RELOADED, version, null, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Snapshot version that contains this change.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Item state before the change; {@code null} for additions and category events.
+     */
+    public InventoryItem getPrevious() {
+        return previous;
+    }
+
+    /**
+     * Item state after the change; {@code null} for removals and category events.
+     */
+    public InventoryItem getCurrent() {
+        return current;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public int getQuantityDelta() {
+        return quantityOf(current) - quantityOf(previous);
+    }
+
+    public double getValueDelta() {
+        return valueOf(current) - valueOf(previous);
+    }
+
+    private static int quantityOf(InventoryItem item) {
+        return item == null ? 0 : item.getQuantity();
+    }
+
+    private static double valueOf(InventoryItem item) {
+        return item == null ? 0 : item.getPrice() * item.getQuantity();
+    }
+}
@@ -0,0 +1,13 @@
+package com.codex.inventory;
+
+import java.util.List;
+
+/**
+ * Receives the events of each commit, one commit at a time and in version order, on the thread that made the
+ * change or on one delivering a commit made at the same time. A change made by a listener is delivered once
+ * the commit in hand has reached every listener; any other change before the method that made it returns.
+ */
+@FunctionalInterface
+public interface InventoryChangeListener {
+    void inventoryChanged(List<InventoryChangeEvent> events);
+}
@@ -0,0 +1,32 @@
+package com.codex.inventory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Canonical instances of low-cardinality strings (categories, units) shared by every loaded item.
+ */
+public final class InventoryDictionary {
+    public static final InventoryDictionary CATEGORIES = new InventoryDictionary();
+    public static final InventoryDictionary UNITS = new InventoryDictionary();
+
+    private final ConcurrentMap<String, String> values = new ConcurrentHashMap<>();
+
+    private InventoryDictionary() {
+    }
+
+    /**
+     * Returns the shared instance equal to {@code value}, registering it on first sight.
+     */
+    public String canonicalize(String value) {
+        if (value.isEmpty()) {
+            return "";
+        }
+        String existing = values.putIfAbsent(value, value);
+        return existing == null ? value : existing;
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
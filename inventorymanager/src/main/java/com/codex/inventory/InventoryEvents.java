@@ -0,0 +1,86 @@
+package com.codex.inventory;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom JDK Flight Recorder events emitted by the inventory manager.
+ */
+public final class InventoryEvents {
+    private InventoryEvents() {
+    }
+
+    @Name("com.codex.inventory.Storage")
+    @Label("Inventory Storage")
+    @Category({"Inventory", "Persistence"})
+    @Description("Load or save of the inventory data file")
+    public static final class StorageEvent extends Event {
+        @Label("Operation")
+        public String operation;
+
+        @Label("Path")
+        public String path;
+
+        @Label("Rows")
+        public int rows;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("com.codex.inventory.Lock")
+    @Label("Inventory Lock")
+    @Category({"Inventory", "Locking"})
+    @Description("Inventory manager operation; the event duration is the lock hold time")
+    public static final class LockEvent extends Event {
+        @Label("Operation")
+        public String operation;
+
+        @Label("Wait Time")
+        @Timespan
+        public long waitTime;
+    }
+
+    @Name("com.codex.inventory.Filter")
+    @Label("Inventory Filter")
+    @Category({"Inventory", "UI"})
+    @Description("Filtering of the inventory list for the table view")
+    public static final class FilterEvent extends Event {
+        @Label("Search")
+        public String search;
+
+        @Label("Category")
+        public String category;
+
+        @Label("Low Stock Only")
+        public boolean lowStockOnly;
+
+        @Label("Query")
+        public String query;
+
+        @Label("Plan")
+        @Description("Index used to find candidates, or the kind of scan")
+        public String plan;
+
+        @Label("Input Size")
+        public int inputSize;
+
+        @Label("Result Size")
+        public int resultSize;
+    }
+
+    @Name("com.codex.inventory.TableRefresh")
+    @Label("Inventory Table Refresh")
+    @Category({"Inventory", "UI"})
+    @Description("Full refresh of the inventory table, including filtering and totals")
+    public static final class TableRefreshEvent extends Event {
+        @Label("Rows")
+        public int rows;
+    }
+}
@@ -0,0 +1,266 @@
+package com.codex.inventory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Fingerprint of the text data file: consecutive runs of {@value #PARTITION_LINES} item lines, each with its
+ * byte range, a CRC and the ids it holds. Comparing the index taken at the last load or save with a fresh
+ * one tells which partitions another program rewrote or appended, so only those are parsed again.
+ * Boundaries fall every {@value #PARTITION_LINES} item lines from the start, so an append or an in-place
+ * edit leaves every other partition intact. Bytes after the last newline are a line still being written and are ignored.
+ */
+final class InventoryFileIndex {
+    static final int PARTITION_LINES = 4096;
+    private static final int UUID_CHARS = 36;
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+
+    private final List<Partition> partitions;
+    private final long length;
+
+    private InventoryFileIndex(List<Partition> partitions, long length) {
+        this.partitions = partitions;
+        this.length = length;
+    }
+
+    /**
+     * Indexes the complete lines of {@code channel}, reading it once from the start.
+     */
+    static InventoryFileIndex scan(FileChannel channel) throws IOException {
+        Builder builder = new Builder();
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        byte[] carry = new byte[256];
+        int carried = 0;
+        long position = 0;
+        int read;
+        while ((read = channel.read(buffer, position)) > 0) {
+            position += read;
+            byte[] bytes = buffer.array();
+            int lineStart = 0;
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                if (carried > 0) {
+                    carry = append(carry, carried, bytes, 0, i + 1);
+                    builder.line(carry, 0, carried + i + 1);
+                    carried = 0;
+                } else {
+                    builder.line(bytes, lineStart, i + 1 - lineStart);
+                }
+                lineStart = i + 1;
+            }
+            if (lineStart < read) {
+                int start = carried > 0 ? 0 : lineStart;
+                carry = append(carry, carried, bytes, start, read - start);
+                carried += read - start;
+            }
+            buffer.clear();
+        }
+        return builder.build();
+    }
+
+    long length() {
+        return length;
+    }
+
+    int partitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * Partitions of this index whose bytes {@code previous} does not have in any partition. Matching by
+     * content rather than offset keeps an edit that changes one line's length from flagging every
+     * partition after it.
+     */
+    List<Partition> changedSince(InventoryFileIndex previous) {
+        Set<Partition> before = previous.contents();
+        List<Partition> changed = new ArrayList<>();
+        for (Partition partition : partitions) {
+            if (!before.contains(partition)) {
+                changed.add(partition);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Ids that were in partitions {@code previous} had and this index lost, and that no changed partition
+     * of this index still holds: the items another program deleted.
+     */
+    List<UUID> removedSince(InventoryFileIndex previous, List<Partition> changed) {
+        Set<Partition> now = contents();
+        Set<UUID> kept = new HashSet<>();
+        for (Partition partition : changed) {
+            partition.addIds(kept);
+        }
+        List<UUID> removed = new ArrayList<>();
+        for (Partition partition : previous.partitions) {
+            if (!now.contains(partition)) {
+                for (int i = 0; i < partition.idCount; i++) {
+                    UUID id = new UUID(partition.ids[2 * i], partition.ids[2 * i + 1]);
+                    if (!kept.contains(id)) {
+                        removed.add(id);
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    private Set<Partition> contents() {
+        return new HashSet<>(partitions);
+    }
+
+    private static byte[] append(byte[] carry, int carried, byte[] bytes, int from, int count) {
+        if (carried + count > carry.length) {
+            carry = Arrays.copyOf(carry, Math.max(carry.length * 2, carried + count));
+        }
+        System.arraycopy(bytes, from, carry, carried, count);
+        return carry;
+    }
+
+    /**
+     * Byte range of one partition, with its CRC and ids.
+     */
+    static final class Partition {
+        private final long offset;
+        private final long length;
+        private final long crc;
+        private final long[] ids;
+        private final int idCount;
+
+        private Partition(long offset, long length, long crc, long[] ids, int idCount) {
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+            this.ids = ids;
+            this.idCount = idCount;
+        }
+
+        long offset() {
+            return offset;
+        }
+
+        long length() {
+            return length;
+        }
+
+        /**
+         * Equal when the bytes are, as far as length and CRC tell; the offset does not matter.
+         */
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Partition)) {
+                return false;
+            }
+            Partition partition = (Partition) other;
+            return partition.length == length && partition.crc == crc;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(crc) * 31 + Long.hashCode(length);
+        }
+
+        private void addIds(Set<UUID> target) {
+            for (int i = 0; i < idCount; i++) {
+                target.add(new UUID(ids[2 * i], ids[2 * i + 1]));
+            }
+        }
+    }
+
+    /**
+     * Builds an index from whole lines, each including its terminating newline, as they are read or written.
+     */
+    static final class Builder {
+        private final List<Partition> partitions = new ArrayList<>();
+        private final CRC32 crc = new CRC32();
+        private long offset;
+        private long partitionStart;
+        private int lines;
+        private long[] ids = new long[2 * PARTITION_LINES];
+        private int idCount;
+
+        void line(byte[] bytes, int from, int count) {
+            crc.update(bytes, from, count);
+            offset += count;
+            if (!isItemLine(bytes, from, count)) {
+                return;
+            }
+            if (count > UUID_CHARS && parseUuid(bytes, from)) {
+                idCount++;
+            }
+            if (++lines == PARTITION_LINES) {
+                close();
+            }
+        }
+
+        InventoryFileIndex build() {
+            if (offset > partitionStart) {
+                close();
+            }
+            return new InventoryFileIndex(Collections.unmodifiableList(partitions), offset);
+        }
+
+        private void close() {
+            partitions.add(new Partition(partitionStart, offset - partitionStart, crc.getValue(), Arrays.copyOf(ids, 2 * idCount), idCount));
+            crc.reset();
+            partitionStart = offset;
+            lines = 0;
+            idCount = 0;
+        }
+
+        private static boolean isItemLine(byte[] bytes, int from, int count) {
+            for (int i = from; i < from + count; i++) {
+                byte b = bytes[i];
+                if (b == '#') {
+                    return false;
+                }
+                if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Reads the canonical text form of a UUID at {@code from} into the next id slot.
+         */
+        private boolean parseUuid(byte[] bytes, int from) {
+            long most = 0;
+            long least = 0;
+            int digits = 0;
+            for (int i = 0; i < UUID_CHARS; i++) {
+                byte b = bytes[from + i];
+                if (i == 8 || i == 13 || i == 18 || i == 23) {
+                    if (b != '-') {
+                        return false;
+                    }
+                    continue;
+                }
+                int digit = Character.digit(b, 16);
+                if (digit < 0) {
+                    return false;
+                }
+                if (digits++ < 16) {
+                    most = most << 4 | digit;
+                } else {
+                    least = least << 4 | digit;
+                }
+            }
+            ids[2 * idCount] = most;
+            ids[2 * idCount + 1] = least;
+            return true;
+        }
+    }
+}
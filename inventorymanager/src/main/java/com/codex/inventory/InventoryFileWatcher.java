@@ -0,0 +1,99 @@
+package com.codex.inventory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Watches the data file and merges edits other programs make to it into a running {@link InventoryManager}.
+ * Bursts of events, such as a tool writing in several steps, are merged once the file has been quiet for
+ * {@value #QUIET_MILLIS} ms. The app's own saves also raise events; the storage recognises them and no work
+ * is done.
+ */
+public final class InventoryFileWatcher implements AutoCloseable {
+    private static final long QUIET_MILLIS = 250;
+
+    private final InventoryManager manager;
+    private final IntConsumer onMerged;
+    private final WatchService service;
+    private final Path fileName;
+    private final Thread thread;
+    private final InventoryMetrics metrics = InventoryMetrics.global();
+
+    private InventoryFileWatcher(InventoryManager manager, IntConsumer onMerged) throws IOException {
+        Path file = manager.storage().getFilePath().toAbsolutePath();
+        this.manager = manager;
+        this.onMerged = onMerged;
+        this.fileName = file.getFileName();
+        this.service = FileSystems.getDefault().newWatchService();
+        file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::run, "inventory-file-watcher");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts watching; {@code onMerged} is called on the watcher thread with the number of items changed
+     * by each merge that changed any.
+     */
+    public static InventoryFileWatcher start(InventoryManager manager, IntConsumer onMerged) {
+        try {
+            InventoryFileWatcher watcher = new InventoryFileWatcher(manager, onMerged);
+            watcher.thread.start();
+            return watcher;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to watch " + manager.storage().getFilePath(), ex);
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!concernsFile(service.take())) {
+                    continue;
+                }
+                WatchKey more;
+                while ((more = service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    concernsFile(more);
+                }
+                try {
+                    int merged = manager.mergeExternalChanges();
+                    if (merged > 0) {
+                        onMerged.accept(merged);
+                    }
+                } catch (RuntimeException ex) {
+                    // Typically a tool still writing without locking; the next event retries.
+                    metrics.increment("watcher.errors");
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ex) {
+            // Closed; stop watching.
+        }
+    }
+
+    private boolean concernsFile(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            relevant |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+        }
+        key.reset();
+        return relevant;
+    }
+
+    @Override
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to stop watching " + manager.storage().getFilePath(), ex);
+        }
+    }
+}
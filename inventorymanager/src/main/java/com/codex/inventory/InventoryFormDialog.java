@@ -15,6 +15,7 @@ public final class InventoryFormDialog extends JDialog {
     private final JTextField unitField = new JTextField(10);
     private final JSpinner priceSpinner = new JSpinner(new SpinnerNumberModel(0.0, 0.0, 10_000.0, 0.25));
     private final JTextField expirationField = new JTextField(10);
+    private final JTextField skuField = new JTextField(16);
     private FormData result;
 
     public InventoryFormDialog(JFrame owner, String title) {
@@ -42,6 +43,8 @@ public final class InventoryFormDialog extends JDialog {
         addRow(formPanel, gbc, "Price (per unit)", priceSpinner);
         expirationField.setToolTipText("yyyy-MM-dd");
         addRow(formPanel, gbc, "Expiration (yyyy-MM-dd)", expirationField);
+        skuField.setToolTipText("Scan the barcode into this field or type the SKU");
+        addRow(formPanel, gbc, "SKU / barcode", skuField);
 
         JLabel helper = new JLabel("Leave expiration blank for shelf-stable goods.");
         helper.setFont(helper.getFont().deriveFont(Font.ITALIC, helper.getFont().getSize2D() - 1));
@@ -99,7 +102,7 @@ public final class InventoryFormDialog extends JDialog {
                 return;
             }
         }
-        result = new FormData(name, category, quantity, unit, price, expiration);
+        result = new FormData(name, category, quantity, unit, price, expiration, skuField.getText().strip());
         setVisible(false);
     }
 
@@ -111,6 +114,7 @@ public final class InventoryFormDialog extends JDialog {
             unitField.setText(prefill.getUnit());
             priceSpinner.setValue(prefill.getPrice());
             expirationField.setText(prefill.getExpirationDate() == null ? "" : prefill.getExpirationDate().toString());
+            skuField.setText(prefill.getSku());
         } else {
             nameField.setText("");
             categoryField.setText("");
@@ -118,6 +122,7 @@ public final class InventoryFormDialog extends JDialog {
             unitField.setText("");
             priceSpinner.setValue(0.0);
             expirationField.setText("");
+            skuField.setText("");
         }
         result = null;
         setVisible(true);
@@ -131,14 +136,16 @@ public final class InventoryFormDialog extends JDialog {
         private final String unit;
         private final double price;
         private final LocalDate expiration;
+        private final String sku;
 
-        public FormData(String name, String category, int quantity, String unit, double price, LocalDate expiration) {
+        public FormData(String name, String category, int quantity, String unit, double price, LocalDate expiration, String sku) {
             this.name = name;
             this.category = category;
             this.quantity = quantity;
             this.unit = unit;
             this.price = price;
             this.expiration = expiration;
+            this.sku = sku;
         }
 
         public String name() {
@@ -164,5 +171,12 @@ public final class InventoryFormDialog extends JDialog {
         public LocalDate expiration() {
             return expiration;
         }
+
+        /**
+         * SKU or barcode; empty when none was entered.
+         */
+        public String sku() {
+            return sku;
+        }
     }
 }
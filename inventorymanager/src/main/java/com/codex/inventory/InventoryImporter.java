@@ -0,0 +1,522 @@
+package com.codex.inventory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Streams supplier CSV files into the inventory.
+ * <p>
+ * Records are read in fixed-size chunks, validated in parallel, matched to existing items by normalized
+ * name and category, and applied through {@link InventoryManager#applyBatch} one chunk at a time, so memory
+ * use does not grow with the file. The header row selects the columns; the layout written by
+ * <em>Export CSV</em> is accepted as-is.
+ */
+public final class InventoryImporter {
+    public enum QuantityMode {
+        /** The file holds on-hand counts that replace the current quantity. */
+        SET,
+        /** The file holds delivered counts that are added to the current quantity. */
+        ADD
+    }
+
+    static final int CHUNK_SIZE = 16_384;
+    private static final int MAX_REPORTED_ERRORS = 10_000;
+
+    private final InventoryManager manager;
+
+    public InventoryImporter(InventoryManager manager) {
+        this.manager = manager;
+    }
+
+    public ImportReport importCsv(Path source, QuantityMode mode) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            return importCsv(reader, mode);
+        }
+    }
+
+    public ImportReport importCsv(Reader source, QuantityMode mode) throws IOException {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport();
+        CsvReader csv = new CsvReader(source);
+        List<String> header = csv.next();
+        if (header == null) {
+            return report.finish(start);
+        }
+        Columns columns = Columns.of(header);
+        if (columns.name < 0) {
+            report.reject(csv.recordLine(), "Header has no Name column");
+            return report.finish(start);
+        }
+
+        Map<String, UUID> index = new HashMap<>(manager.getItems().size() * 2);
+        for (InventoryItem item : manager.getItems()) {
+            index.put(key(item.getName(), item.getCategory()), item.getId());
+        }
+
+        List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+        List<String> record;
+        while ((record = csv.next()) != null) {
+            chunk.add(new Row(csv.recordLine(), record));
+            if (chunk.size() == CHUNK_SIZE) {
+                applyChunk(chunk, columns, mode, index, report);
+                chunk.clear();
+            }
+        }
+        applyChunk(chunk, columns, mode, index, report);
+        if (report.added + report.updated > 0) {
+            manager.persist();
+        }
+        return report.finish(start);
+    }
+
+    /**
+     * Validates {@code chunk} in parallel, then merges it into the current items under the manager's lock,
+     * so edits, restocks and outside merges that land during a long import are built on rather than
+     * overwritten. {@code index} maps matching keys to item ids.
+     */
+    private void applyChunk(List<Row> chunk, Columns columns, QuantityMode mode, Map<String, UUID> index, ImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<Row> validated = chunk.parallelStream()
+                .map(row -> row.validate(columns))
+                .collect(Collectors.toList());
+        manager.applyBatch(() -> merge(validated, mode, index, report), false);
+    }
+
+    /**
+     * Upserts for the validated rows of one chunk, each applied to the item as it is now. Called under the
+     * manager's lock.
+     */
+    private Collection<InventoryItem> merge(List<Row> validated, QuantityMode mode, Map<String, UUID> index, ImportReport report) {
+        Map<String, InventoryItem> upserts = new LinkedHashMap<>();
+        SkuClaims skus = new SkuClaims();
+        for (Row row : validated) {
+            report.rows++;
+            if (row.error != null) {
+                report.reject(row.line, row.error);
+                continue;
+            }
+            String key = key(row.name, row.category);
+            InventoryItem existing = upserts.get(key);
+            if (existing == null && index.containsKey(key)) {
+                // Null when the item was deleted since the import started; the row then adds it afresh.
+                existing = manager.findById(index.get(key)).orElse(null);
+            }
+            InventoryItem merged;
+            if (existing == null) {
+                merged = InventoryItem.create(
+                        row.name,
+                        row.category,
+                        row.quantity == null ? 0 : row.quantity,
+                        row.unit == null ? "" : row.unit,
+                        row.price == null ? 0 : row.price,
+                        row.expiration
+                );
+            } else {
+                int quantity;
+                try {
+                    quantity = row.quantity == null
+                            ? existing.getQuantity()
+                            : mode == QuantityMode.ADD ? Math.addExact(existing.getQuantity(), row.quantity) : row.quantity;
+                } catch (ArithmeticException ex) {
+                    report.reject(row.line, "Quantity would exceed " + Integer.MAX_VALUE + " for " + existing.getName());
+                    continue;
+                }
+                merged = existing.update(
+                        existing.getName(),
+                        existing.getCategory(),
+                        quantity,
+                        row.unit == null ? existing.getUnit() : row.unit,
+                        row.price == null ? existing.getPrice() : row.price,
+                        row.hasExpiration ? row.expiration : existing.getExpirationDate()
+                );
+            }
+            if (row.sku != null && !row.sku.equals(merged.getSku())) {
+                String holder = skus.holder(row.sku);
+                if (holder != null && !holder.equals(key)) {
+                    report.reject(row.line, "SKU " + row.sku + " already belongs to another item");
+                    continue;
+                }
+                skus.move(key, merged.getSku(), row.sku);
+                merged = merged.withSku(row.sku);
+            }
+            if (existing == null) {
+                report.added++;
+            } else if (!upserts.containsKey(key)) {
+                report.updated++;
+            }
+            index.put(key, merged.getId());
+            upserts.put(key, merged);
+        }
+        return upserts.values();
+    }
+
+    /**
+     * Which item holds each SKU as the rows of one chunk are applied in order: SKUs moved by earlier rows
+     * of the chunk, and otherwise the manager's index as of the chunk start.
+     */
+    private final class SkuClaims {
+        private final Map<String, String> moved = new HashMap<>();
+        private final Set<String> released = new HashSet<>();
+
+        /**
+         * Matching key of the item holding {@code sku}, or null if it is free.
+         */
+        String holder(String sku) {
+            String key = moved.get(sku);
+            if (key != null || released.contains(sku)) {
+                return key;
+            }
+            return manager.findBySku(sku).map(owner -> key(owner.getName(), owner.getCategory())).orElse(null);
+        }
+
+        void move(String key, String from, String to) {
+            if (!from.isEmpty()) {
+                moved.remove(from);
+                released.add(from);
+            }
+            if (!to.isEmpty()) {
+                moved.put(to, key);
+            }
+        }
+    }
+
+    /**
+     * Matching key: name and category, trimmed and case-folded.
+     */
+    static String key(String name, String category) {
+        return name.strip().toLowerCase(Locale.ROOT) + '\u0000' + category.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Outcome of an import. Only the first {@value #MAX_REPORTED_ERRORS} rejected rows are kept in detail.
+     */
+    public static final class ImportReport {
+        private int rows;
+        private int added;
+        private int updated;
+        private int rejected;
+        private long elapsedMillis;
+        private final List<RowError> errors = new ArrayList<>();
+
+        private void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(line, message));
+            }
+        }
+
+        private ImportReport finish(long start) {
+            elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            return this;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public List<RowError> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+    }
+
+    public static final class RowError {
+        private final long line;
+        private final String message;
+
+        private RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + line + ": " + message;
+        }
+    }
+
+    /**
+     * Column positions resolved from the header row; -1 when absent.
+     */
+    private static final class Columns {
+        private int name = -1;
+        private int category = -1;
+        private int quantity = -1;
+        private int unit = -1;
+        private int price = -1;
+        private int expiration = -1;
+        private int sku = -1;
+
+        static Columns of(List<String> header) {
+            Columns columns = new Columns();
+            for (int i = 0; i < header.size(); i++) {
+                switch (header.get(i).strip().toLowerCase(Locale.ROOT)) {
+                    case "name":
+                    case "item":
+                    case "product":
+                        columns.name = i;
+                        break;
+                    case "category":
+                        columns.category = i;
+                        break;
+                    case "quantity":
+                    case "qty":
+                        columns.quantity = i;
+                        break;
+                    case "unit":
+                    case "uom":
+                        columns.unit = i;
+                        break;
+                    case "price":
+                    case "unit price":
+                    case "cost":
+                        columns.price = i;
+                        break;
+                    case "expiration":
+                    case "expires":
+                    case "expiry":
+                        columns.expiration = i;
+                        break;
+                    case "sku":
+                    case "barcode":
+                    case "upc":
+                    case "ean":
+                        columns.sku = i;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * One CSV record; {@link #validate} fills in the typed fields or an error message.
+     */
+    private static final class Row {
+        private final long line;
+        private final List<String> fields;
+        private String name;
+        private String category;
+        private Integer quantity;
+        private String unit;
+        private Double price;
+        private LocalDate expiration;
+        private boolean hasExpiration;
+        /** Validated SKU, blank to clear it, or null when the file has no SKU column. */
+        private String sku;
+        private String error;
+
+        Row(long line, List<String> fields) {
+            this.line = line;
+            this.fields = fields;
+        }
+
+        Row validate(Columns columns) {
+            name = field(columns.name);
+            if (name == null || name.isEmpty()) {
+                error = "Missing name";
+                return this;
+            }
+            String categoryText = field(columns.category);
+            category = categoryText == null ? "" : categoryText;
+            unit = field(columns.unit);
+            String quantityText = field(columns.quantity);
+            if (quantityText != null && !quantityText.isEmpty()) {
+                try {
+                    quantity = Integer.parseInt(quantityText);
+                } catch (NumberFormatException ex) {
+                    error = "Invalid quantity '" + quantityText + "'";
+                    return this;
+                }
+                if (quantity < 0) {
+                    error = "Negative quantity " + quantity;
+                    return this;
+                }
+            }
+            String priceText = field(columns.price);
+            if (priceText != null && !priceText.isEmpty()) {
+                try {
+                    price = Double.parseDouble(priceText.startsWith("$") ? priceText.substring(1) : priceText);
+                } catch (NumberFormatException ex) {
+                    error = "Invalid price '" + priceText + "'";
+                    return this;
+                }
+                if (price < 0 || price.isNaN() || price.isInfinite()) {
+                    error = "Invalid price '" + priceText + "'";
+                    return this;
+                }
+            }
+            String expirationText = field(columns.expiration);
+            if (expirationText != null) {
+                hasExpiration = true;
+                if (!expirationText.isEmpty()) {
+                    try {
+                        expiration = LocalDate.parse(expirationText);
+                    } catch (DateTimeParseException ex) {
+                        error = "Expiration must be yyyy-MM-dd, got '" + expirationText + "'";
+                        return this;
+                    }
+                }
+            }
+            String skuText = field(columns.sku);
+            if (skuText != null) {
+                try {
+                    sku = InventoryItem.validSku(skuText);
+                } catch (IllegalArgumentException ex) {
+                    error = ex.getMessage();
+                    return this;
+                }
+            }
+            return this;
+        }
+
+        private String field(int column) {
+            if (column < 0 || column >= fields.size()) {
+                return null;
+            }
+            return fields.get(column).strip();
+        }
+    }
+
+    /**
+     * Minimal RFC 4180 reader: comma separated, double-quoted fields may contain commas, doubled quotes
+     * and line breaks.
+     */
+    private static final class CsvReader {
+        private final Reader in;
+        private final char[] buffer = new char[64 * 1024];
+        private int position;
+        private int limit;
+        private long line = 1;
+        private long recordLine;
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        long recordLine() {
+            return recordLine;
+        }
+
+        List<String> next() throws IOException {
+            int c = read();
+            while (c == '\n' || c == '\r') {
+                c = read();
+            }
+            if (c < 0) {
+                return null;
+            }
+            recordLine = line;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c < 0) {
+                        fields.add(field.toString());
+                        return fields;
+                    }
+                    if (c == '"') {
+                        int following = read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            c = following;
+                            continue;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == '\r' || c < 0) {
+                    if (c == '\r') {
+                        int following = read();
+                        if (following != '\n') {
+                            unread();
+                        }
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            char c = buffer[position++];
+            if (c == '\n') {
+                line++;
+            }
+            return c;
+        }
+
+        private void unread() {
+            if (position > 0) {
+                position--;
+                if (buffer[position] == '\n') {
+                    line--;
+                }
+            }
+        }
+    }
+}
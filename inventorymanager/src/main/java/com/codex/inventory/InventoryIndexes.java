@@ -0,0 +1,185 @@
+package com.codex.inventory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes over the current items, used by {@link InventoryManager#query} to avoid full scans.
+ * <p>
+ * Categories are hashed case-insensitively; quantities and expiration days are kept in sorted maps so
+ * range terms can be answered from the matching buckets. Not thread-safe; the manager updates and reads
+ * the indexes under its lock.
+ */
+final class InventoryIndexes {
+    /**
+     * Above this share of all items, fetching and re-sorting candidates costs more than a scan, which
+     * yields name order for free.
+     */
+    private static final double MAX_SELECTIVITY = 0.05;
+
+    private final Map<String, ItemIdIndex> categories = new HashMap<>();
+    private final TreeMap<Integer, ItemIdIndex> quantities = new TreeMap<>();
+    private final TreeMap<Integer, ItemIdIndex> expirations = new TreeMap<>();
+
+    void update(InventoryItem previous, InventoryItem next) {
+        if (previous != null) {
+            remove(categories, categoryKey(previous), previous);
+            remove(quantities, previous.getQuantity(), previous);
+            if (previous.getExpirationEpochDay() != InventoryItem.NO_EXPIRATION) {
+                remove(expirations, previous.getExpirationEpochDay(), previous);
+            }
+        }
+        if (next != null) {
+            categories.computeIfAbsent(categoryKey(next), key -> new ItemIdIndex()).put(next);
+            quantities.computeIfAbsent(next.getQuantity(), key -> new ItemIdIndex()).put(next);
+            if (next.getExpirationEpochDay() != InventoryItem.NO_EXPIRATION) {
+                expirations.computeIfAbsent(next.getExpirationEpochDay(), key -> new ItemIdIndex()).put(next);
+            }
+        }
+    }
+
+    /**
+     * Picks the cheapest index access for {@code query} over {@code total} items, or null when none applies
+     * or a scan would touch fewer items.
+     */
+    Access plan(InventoryQuery query, int total) {
+        Access access = query.root() == null ? null : plan(query.root());
+        return access == null || access.estimate > total * MAX_SELECTIVITY ? null : access;
+    }
+
+    private Access plan(InventoryQuery.Node node) {
+        if (node instanceof InventoryQuery.And) {
+            Access best = null;
+            for (InventoryQuery.Node term : ((InventoryQuery.And) node).terms) {
+                Access access = plan(term);
+                if (access != null && (best == null || access.estimate < best.estimate)) {
+                    best = access;
+                }
+            }
+            return best;
+        }
+        if (node instanceof InventoryQuery.Or) {
+            Access union = new Access("");
+            for (InventoryQuery.Node term : ((InventoryQuery.Or) node).terms) {
+                Access access = plan(term);
+                if (access == null) {
+                    return null;
+                }
+                union.add(access);
+            }
+            union.overlapping = true;
+            return union;
+        }
+        if (node instanceof InventoryQuery.Equals) {
+            InventoryQuery.Equals equals = (InventoryQuery.Equals) node;
+            if (equals.field != InventoryQuery.Field.CATEGORY) {
+                return null;
+            }
+            Access access = new Access("category");
+            ItemIdIndex bucket = categories.get(equals.value.toLowerCase(Locale.ROOT));
+            if (bucket != null) {
+                access.add(bucket);
+            }
+            return access;
+        }
+        if (node instanceof InventoryQuery.Range) {
+            InventoryQuery.Range range = (InventoryQuery.Range) node;
+            switch (range.field) {
+                case QUANTITY:
+                    return range(quantities, range, "qty");
+                case EXPIRES:
+                    return range(expirations, range, "expires");
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    private static Access range(TreeMap<Integer, ItemIdIndex> index, InventoryQuery.Range range, String name) {
+        Access access = new Access(name);
+        int low = range.lowInt();
+        int high = range.highInt();
+        if (low <= high) {
+            NavigableMap<Integer, ItemIdIndex> buckets = index.subMap(low, true, high, true);
+            for (ItemIdIndex bucket : buckets.values()) {
+                access.add(bucket);
+            }
+        }
+        return access;
+    }
+
+    private static String categoryKey(InventoryItem item) {
+        return item.getCategory().toLowerCase(Locale.ROOT);
+    }
+
+    private static <K> void remove(Map<K, ItemIdIndex> index, K key, InventoryItem item) {
+        ItemIdIndex bucket = index.get(key);
+        if (bucket != null) {
+            bucket.remove(item);
+            if (bucket.size() == 0) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Index buckets whose items are a superset of a query's matches.
+     */
+    static final class Access {
+        private String name;
+        private final List<ItemIdIndex> buckets = new ArrayList<>();
+        private int estimate;
+        private boolean overlapping;
+
+        private Access(String name) {
+            this.name = name;
+        }
+
+        private void add(ItemIdIndex bucket) {
+            buckets.add(bucket);
+            estimate += bucket.size();
+        }
+
+        private void add(Access other) {
+            name = name.isEmpty() ? other.name : name + " OR " + other.name;
+            buckets.addAll(other.buckets);
+            estimate += other.estimate;
+        }
+
+        /**
+         * Copies the candidate items; called under the manager lock.
+         */
+        List<InventoryItem> candidates() {
+            List<InventoryItem> items = new ArrayList<>(estimate);
+            if (overlapping) {
+                Set<InventoryItem> seen = Collections.newSetFromMap(new IdentityHashMap<>(estimate));
+                for (ItemIdIndex bucket : buckets) {
+                    bucket.forEach(item -> {
+                        if (seen.add(item)) {
+                            items.add(item);
+                        }
+                    });
+                }
+            } else {
+                for (ItemIdIndex bucket : buckets) {
+                    bucket.forEach(items::add);
+                }
+            }
+            return items;
+        }
+
+        @Override
+        public String toString() {
+            return "index " + name + " (" + estimate + " candidates)";
+        }
+    }
+}
@@ -2,21 +2,34 @@ package com.codex.inventory;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.Objects;
 import java.util.UUID;
 
 /**
  * Immutable representation of a grocery inventory record.
+ * <p>
+ * The id and timestamps are held in primitive form and category/unit are canonicalized through
+ * {@link InventoryDictionary}, so a large catalog retains roughly one object per item plus its name and SKU.
+ * Items built from an {@link OffHeapItemStore} read and decode the name and SKU from the store on first use,
+ * so lookups and scans that never look at them skip both.
  */
 public final class InventoryItem {
-    private final UUID id;
-    private final String name;
+    static final int NO_EXPIRATION = Integer.MIN_VALUE;
+    static final int MAX_SKU_LENGTH = 64;
+
+    private final long idMostSigBits;
+    private final long idLeastSigBits;
+    /** Where to decode the name and SKU of an item read from a store; null for every other item. */
+    private final StoredText text;
+    private String name;
     private final String category;
     private final int quantity;
     private final String unit;
     private final double price;
-    private final LocalDate expirationDate;
-    private final LocalDateTime updatedAt;
+    private final int expirationEpochDay;
+    private final long updatedAtMicros;
+    private String sku;
 
     InventoryItem(
             UUID id,
@@ -26,16 +39,74 @@ public final class InventoryItem {
             String unit,
             double price,
             LocalDate expirationDate,
-            LocalDateTime updatedAt
+            LocalDateTime updatedAt,
+            String sku
+    ) {
+        this(
+                Objects.requireNonNull(id, "id").getMostSignificantBits(),
+                id.getLeastSignificantBits(),
+                name,
+                category,
+                quantity,
+                unit,
+                price,
+                expirationDate == null ? NO_EXPIRATION : (int) expirationDate.toEpochDay(),
+                toEpochMicros(Objects.requireNonNull(updatedAt, "updatedAt")),
+                sku
+        );
+    }
+
+    InventoryItem(
+            long idMostSigBits,
+            long idLeastSigBits,
+            String name,
+            String category,
+            int quantity,
+            String unit,
+            double price,
+            int expirationEpochDay,
+            long updatedAtMicros,
+            String sku
     ) {
-        this.id = Objects.requireNonNull(id, "id");
+        this.idMostSigBits = idMostSigBits;
+        this.idLeastSigBits = idLeastSigBits;
+        this.text = null;
         this.name = name.strip();
-        this.category = category.strip();
+        this.category = InventoryDictionary.CATEGORIES.canonicalize(category.strip());
         this.quantity = Math.max(0, quantity);
-        this.unit = unit.strip();
+        this.unit = InventoryDictionary.UNITS.canonicalize(unit.strip());
         this.price = Math.max(0, price);
-        this.expirationDate = expirationDate;
-        this.updatedAt = Objects.requireNonNull(updatedAt, "updatedAt");
+        this.expirationEpochDay = expirationEpochDay;
+        this.updatedAtMicros = updatedAtMicros;
+        this.sku = sanitize(sku);
+    }
+
+    /**
+     * Item whose name and SKU are read from {@code textStore} when first needed, as
+     * {@link OffHeapItemStore#name} and {@link OffHeapItemStore#sku} of {@code textOffset} and {@code textLengths}.
+     */
+    InventoryItem(
+            long idMostSigBits,
+            long idLeastSigBits,
+            OffHeapItemStore textStore,
+            long textOffset,
+            int textLengths,
+            String category,
+            int quantity,
+            String unit,
+            double price,
+            int expirationEpochDay,
+            long updatedAtMicros
+    ) {
+        this.idMostSigBits = idMostSigBits;
+        this.idLeastSigBits = idLeastSigBits;
+        this.text = new StoredText(textStore, textOffset, textLengths);
+        this.category = InventoryDictionary.CATEGORIES.canonicalize(category);
+        this.quantity = quantity;
+        this.unit = InventoryDictionary.UNITS.canonicalize(unit);
+        this.price = price;
+        this.expirationEpochDay = expirationEpochDay;
+        this.updatedAtMicros = updatedAtMicros;
     }
 
     public static InventoryItem create(
@@ -54,7 +125,8 @@ public final class InventoryItem {
                 sanitize(unit),
                 price,
                 expirationDate,
-                LocalDateTime.now()
+                LocalDateTime.now(),
+                ""
         );
     }
 
@@ -67,40 +139,125 @@ public final class InventoryItem {
             LocalDate expirationDate
     ) {
         return new InventoryItem(
-                id,
+                idMostSigBits,
+                idLeastSigBits,
                 sanitize(name),
                 sanitize(category),
                 quantity,
                 sanitize(unit),
                 price,
-                expirationDate,
-                LocalDateTime.now()
+                expirationDate == null ? NO_EXPIRATION : (int) expirationDate.toEpochDay(),
+                nowMicros(),
+                getSku()
+        );
+    }
+
+    /**
+     * Copy with barcode or SKU {@code sku}; blank clears it.
+     *
+     * @throws IllegalArgumentException if {@code sku} is longer than {@value #MAX_SKU_LENGTH} characters or
+     *                                  holds anything but printable ASCII without spaces
+     */
+    public InventoryItem withSku(String sku) {
+        String value = validSku(sku);
+        return new InventoryItem(
+                idMostSigBits,
+                idLeastSigBits,
+                getName(),
+                category,
+                quantity,
+                unit,
+                price,
+                expirationEpochDay,
+                nowMicros(),
+                value
         );
     }
 
     public InventoryItem restock(int amount) {
         return new InventoryItem(
-                id,
-                name,
+                idMostSigBits,
+                idLeastSigBits,
+                getName(),
                 category,
                 Math.max(0, quantity + amount),
                 unit,
                 price,
-                expirationDate,
-                LocalDateTime.now()
+                expirationEpochDay,
+                nowMicros(),
+                getSku()
         );
     }
 
+    /**
+     * {@code sku} stripped, as {@link #withSku} would store it.
+     *
+     * @throws IllegalArgumentException as {@link #withSku} does
+     */
+    static String validSku(String sku) {
+        String value = sanitize(sku);
+        if (value.length() > MAX_SKU_LENGTH) {
+            throw new IllegalArgumentException("SKU is longer than " + MAX_SKU_LENGTH + " characters");
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c <= ' ' || c > '~') {
+                throw new IllegalArgumentException("SKU may only contain printable ASCII without spaces");
+            }
+        }
+        return value;
+    }
+
     private static String sanitize(String value) {
         return value == null ? "" : value.strip();
     }
 
+    private static long nowMicros() {
+        return toEpochMicros(LocalDateTime.now());
+    }
+
+    /**
+     * Encodes a local timestamp as microseconds since 1970-01-01T00:00 (no zone is applied).
+     */
+    static long toEpochMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + dateTime.getNano() / 1_000;
+    }
+
+    static LocalDateTime fromEpochMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(
+                Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000,
+                ZoneOffset.UTC
+        );
+    }
+
+    /**
+     * Compares ids without materializing a {@link UUID}.
+     */
+    public boolean hasId(UUID id) {
+        return id.getMostSignificantBits() == idMostSigBits && id.getLeastSignificantBits() == idLeastSigBits;
+    }
+
     public UUID getId() {
-        return id;
+        return new UUID(idMostSigBits, idLeastSigBits);
+    }
+
+    long getIdMostSigBits() {
+        return idMostSigBits;
+    }
+
+    long getIdLeastSigBits() {
+        return idLeastSigBits;
     }
 
     public String getName() {
-        return name;
+        String value = name;
+        if (value == null) {
+            // Racing threads may both decode; they store equal strings.
+            value = text.store.name(text.offset, text.lengths);
+            name = value;
+        }
+        return value;
     }
 
     public String getCategory() {
@@ -120,10 +277,46 @@ public final class InventoryItem {
     }
 
     public LocalDate getExpirationDate() {
-        return expirationDate;
+        return expirationEpochDay == NO_EXPIRATION ? null : LocalDate.ofEpochDay(expirationEpochDay);
+    }
+
+    int getExpirationEpochDay() {
+        return expirationEpochDay;
     }
 
     public LocalDateTime getUpdatedAt() {
-        return updatedAt;
+        return fromEpochMicros(updatedAtMicros);
+    }
+
+    long getUpdatedAtMicros() {
+        return updatedAtMicros;
+    }
+
+    /**
+     * Barcode or stock-keeping unit, or an empty string when the item has none.
+     */
+    public String getSku() {
+        String value = sku;
+        if (value == null) {
+            value = text.store.sku(text.offset, text.lengths);
+            sku = value;
+        }
+        return value;
+    }
+
+    /**
+     * Location of a stored item's name and SKU. Kept apart so items built on the heap, which always carry
+     * both strings, pay one null reference rather than these fields.
+     */
+    private static final class StoredText {
+        private final OffHeapItemStore store;
+        private final long offset;
+        private final int lengths;
+
+        private StoredText(OffHeapItemStore store, long offset, int lengths) {
+            this.store = store;
+            this.offset = offset;
+            this.lengths = lengths;
+        }
     }
 }
@@ -1,84 +1,951 @@
 package com.codex.inventory;
 
 import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.OptionalLong;
+import java.util.TreeMap;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Coordinates state changes while keeping persistence in sync.
+ * <p>
+ * Writers serialize on a lock and publish a new {@link InventorySnapshot} per change; readers never lock
+ * and always see one consistent version, kept in name order. Items are held on the heap unless the manager
+ * is created with an {@link OffHeapItemStore}. An item's quantity is its total across locations; the split
+ * per location lives in {@code locations/} next to the data file.
  */
 public final class InventoryManager {
-    private final List<InventoryItem> items = new ArrayList<>();
+    private static final Comparator<InventoryItem> NAME_ORDER =
+            Comparator.comparing(InventoryItem::getName, String.CASE_INSENSITIVE_ORDER);
+    private static final Comparator<String> CATEGORY_ORDER =
+            String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.<String>naturalOrder());
+
     private final InventoryStorage storage;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final InventoryMetrics metrics = InventoryMetrics.global();
+    private final Map<Long, Integer> pinnedVersions = new ConcurrentSkipListMap<>();
+    private final List<InventoryChangeListener> listeners = new CopyOnWriteArrayList<>();
+    /** Commits not yet delivered, queued under {@link #lock} and so in version order. */
+    private final Queue<List<InventoryChangeEvent>> undelivered = new ConcurrentLinkedQueue<>();
+    /** Held by the one thread delivering {@link #undelivered} at a time; never taken under {@link #lock}. */
+    private final ReentrantLock dispatch = new ReentrantLock();
+    private final Map<String, Integer> categoryCounts = new TreeMap<>(CATEGORY_ORDER);
+    private final ItemIdIndex idIndex = new ItemIdIndex();
+    private final OffHeapItemStore store;
+    private final InventoryIndexes indexes;
+    private final LocationStock locations;
+    private final QueryResultCache resultCache = new QueryResultCache();
+    /** Current item by SKU, for items that have one; written under the lock, read without it. */
+    private final Map<String, InventoryItem> skuIndex = new ConcurrentHashMap<>();
+    /** When each item deleted in this session went, so an older copy in the data file does not bring it back. */
+    private final Map<UUID, Long> removedAt = new HashMap<>();
+    private volatile InventorySnapshot current;
+    private volatile List<String> categories = List.of();
+    private volatile double totalValue;
+    private volatile boolean loaded;
 
     public InventoryManager(Path storagePath) {
         this.storage = new InventoryStorage(storagePath);
-        this.items.addAll(storage.load());
+        this.store = null;
+        this.indexes = new InventoryIndexes();
+        this.locations = new LocationStock(locationDirectory(storagePath));
+        List<InventoryItem> items = storage.load();
+        items.sort(NAME_ORDER);
+        this.current = InventorySnapshot.of(1, items);
+        List<InventoryChangeEvent> ignored = new ArrayList<>();
+        for (InventoryItem item : items) {
+            track(null, item, 1, ignored);
+        }
+        locations.load(current);
+        this.loaded = true;
+    }
+
+    private InventoryManager(InventoryStorage storage, OffHeapItemStore store) {
+        this.storage = storage;
+        this.store = store;
+        this.indexes = store == null ? new InventoryIndexes() : null;
+        this.locations = new LocationStock(locationDirectory(storage.getFilePath()));
+        this.current = store == null ? InventorySnapshot.empty() : InventorySnapshot.empty(store);
+    }
+
+    /**
+     * Creates a manager whose items are not read until {@link #load(int, Consumer)} is called,
+     * letting the UI appear before a large data file has been parsed.
+     */
+    public static InventoryManager deferred(Path storagePath) {
+        return new InventoryManager(new InventoryStorage(storagePath), null);
+    }
+
+    /**
+     * Like {@link #deferred(Path)}, but keeps items in {@code store} and builds them only when read. Secondary
+     * indexes would pin every item on the heap, so queries always scan; only items with a SKU stay on the heap, for
+     * barcode lookups. Snapshots stay immutable; the caller closes the store once the manager and its snapshots are no longer used.
+     */
+    public static InventoryManager offHeap(Path storagePath, OffHeapItemStore store) {
+        return new InventoryManager(new InventoryStorage(storagePath), Objects.requireNonNull(store, "store"));
+    }
+
+    /**
+     * Reads the data file in batches, making each batch visible to readers before handing it to
+     * {@code onBatch}. Mutations are rejected until loading completes.
+     */
+    public int load(int batchSize, Consumer<List<InventoryItem>> onBatch) {
+        if (loaded) {
+            throw new IllegalStateException("Inventory already loaded");
+        }
+        int count = storage.load(batchSize, batch -> {
+            locked("loadBatch", () -> {
+                InventorySnapshot next = publish(current.withAppended(current.version() + 1, batch));
+                List<InventoryChangeEvent> ignored = new ArrayList<>();
+                for (InventoryItem item : batch) {
+                    track(null, item, next.version(), ignored);
+                }
+                return next;
+            });
+            onBatch.accept(batch);
+        });
+        List<InventoryChangeEvent> events = new ArrayList<>();
+        locked("loadBatch", events, () -> {
+            InventorySnapshot next = publish(current.sorted(current.version() + 1, NAME_ORDER));
+            locations.load(next);
+            loaded = true;
+            events.add(InventoryChangeEvent.reloaded(next.version()));
+            return next;
+        });
+        return count;
     }
 
-    public synchronized List<InventoryItem> getItems() {
-        return Collections.unmodifiableList(items);
+    public void addChangeListener(InventoryChangeListener listener) {
+        listeners.add(listener);
     }
 
-    public synchronized List<String> getCategories() {
-        return items.stream()
-                .map(InventoryItem::getCategory)
-                .filter(s -> !s.isBlank())
-                .distinct()
-                .sorted(String.CASE_INSENSITIVE_ORDER)
-                .collect(Collectors.toList());
+    public void removeChangeListener(InventoryChangeListener listener) {
+        listeners.remove(listener);
     }
 
-    public synchronized InventoryItem add(InventoryItem item) {
-        items.add(item);
-        persist();
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Whether items live in an {@link OffHeapItemStore} and are built only when read, so callers should
+     * avoid holding the whole catalog as objects.
+     */
+    public boolean isOffHeap() {
+        return store != null;
+    }
+
+    /**
+     * Returns the current version. The snapshot is immutable, so it can be iterated at leisure while
+     * writers keep committing.
+     */
+    public InventorySnapshot getItems() {
+        return current;
+    }
+
+    /**
+     * Pins the current version for a long read such as an export or report. Close the pin when done;
+     * versions are reclaimed by the garbage collector once neither the manager nor a pin refers to them.
+     */
+    public Pin pin() {
+        InventorySnapshot snapshot = current;
+        pinnedVersions.merge(snapshot.version(), 1, Integer::sum);
+        metrics.increment("snapshot.pins");
+        return new Pin(snapshot);
+    }
+
+    /**
+     * Oldest version still held by an open {@link Pin}, if any.
+     */
+    public OptionalLong oldestPinnedVersion() {
+        for (Long version : pinnedVersions.keySet()) {
+            return OptionalLong.of(version);
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Distinct non-blank categories in case-insensitive order, maintained incrementally as items change.
+     */
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    /**
+     * Sum of price × quantity over all items, maintained incrementally as items change.
+     */
+    public double getTotalValue() {
+        return totalValue;
+    }
+
+    public InventoryItem add(InventoryItem item) {
+        List<InventoryChangeEvent> events = new ArrayList<>();
+        locked("add", events, () -> {
+            requireLoaded();
+            requireUniqueSku(item);
+            InventorySnapshot snapshot = current;
+            InventorySnapshot next = publish(snapshot.withInserted(snapshot.version() + 1, insertionPoint(snapshot, item), item));
+            track(null, item, next.version(), events);
+            persist(events);
+            return item;
+        });
         return item;
     }
 
-    public synchronized InventoryItem update(UUID id, InventoryItem updated) {
-        for (int i = 0; i < items.size(); i++) {
-            if (items.get(i).getId().equals(id)) {
-                items.set(i, updated);
-                persist();
-                return updated;
+    public InventoryItem update(UUID id, InventoryItem updated) {
+        List<InventoryChangeEvent> events = new ArrayList<>();
+        locked("update", events, () -> {
+            requireLoaded();
+            requireUniqueSku(updated);
+            InventorySnapshot snapshot = current;
+            int index = position(snapshot, id);
+            if (index < 0) {
+                throw new IllegalArgumentException("Item not found: " + id);
+            }
+            InventorySnapshot next = publish(replace(snapshot, index, updated));
+            track(snapshot.get(index), updated, next.version(), events);
+            persist(events);
+            return updated;
+        });
+        return updated;
+    }
+
+    public void remove(UUID id) {
+        List<InventoryChangeEvent> events = new ArrayList<>();
+        locked("remove", events, () -> {
+            requireLoaded();
+            InventorySnapshot snapshot = current;
+            int index = position(snapshot, id);
+            if (index >= 0) {
+                InventorySnapshot next = publish(snapshot.withRemoved(snapshot.version() + 1, index));
+                track(snapshot.get(index), null, next.version(), events);
+            }
+            persist(events);
+            return null;
+        });
+    }
+
+    public InventoryItem restock(UUID id, int delta) {
+        List<InventoryChangeEvent> events = new ArrayList<>();
+        InventoryItem restocked = locked("restock", events, () -> {
+            requireLoaded();
+            InventorySnapshot snapshot = current;
+            int index = position(snapshot, id);
+            if (index < 0) {
+                throw new IllegalArgumentException("Item not found: " + id);
+            }
+            InventoryItem previous = snapshot.get(index);
+            InventoryItem next = previous.restock(delta);
+            InventorySnapshot published = publish(snapshot.withReplaced(snapshot.version() + 1, index, next));
+            track(previous, next, published.version(), events);
+            persist(events);
+            return next;
+        });
+        return restocked;
+    }
+
+    public List<String> getLocations() {
+        return locked("locations", locations::names);
+    }
+
+    public void addLocation(String name) {
+        locked("addLocation", () -> locations.add(name));
+    }
+
+    /**
+     * Units of the item held at {@code location}.
+     */
+    public int quantityAt(String location, UUID id) {
+        return locked("quantityAt", () -> locations.quantity(locationIndex(location), id.getMostSignificantBits(), id.getLeastSignificantBits()));
+    }
+
+    /**
+     * Adds {@code delta} units at {@code location} (removes them when negative, never below zero) and
+     * publishes the item with its total changed by the same amount.
+     */
+    public InventoryItem restock(String location, UUID id, int delta) {
+        List<InventoryChangeEvent> events = new ArrayList<>();
+        InventoryItem restocked = locked("restock", events, () -> {
+            requireLoaded();
+            InventorySnapshot snapshot = current;
+            int index = position(snapshot, id);
+            if (index < 0) {
+                throw new IllegalArgumentException("Item not found: " + id);
             }
+            InventoryItem previous = snapshot.get(index);
+            int applied = locations.adjust(locationIndex(location), previous.getIdMostSigBits(), previous.getIdLeastSigBits(), delta);
+            InventoryItem next = previous.restock(applied);
+            InventorySnapshot published = publish(snapshot.withReplaced(snapshot.version() + 1, index, next));
+            track(previous, next, published.version(), events);
+            persist(events);
+            return next;
+        });
+        return restocked;
+    }
+
+    /**
+     * Adds the units in {@code deltas} at {@code location} for every item as one change: one new version and
+     * one save however many items are restocked, which is how scanned deliveries are committed. Ids no
+     * longer in the inventory, such as items deleted after they were scanned, are skipped.
+     *
+     * @return the items restocked, without the skipped ids
+     * @throws UnsavedChangesException if the restock was applied but could not be saved; it must not be repeated
+     */
+    public List<InventoryItem> restockAll(String location, Map<UUID, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return List.of();
+        }
+        List<InventoryChangeEvent> events = new ArrayList<>();
+        List<InventoryItem> restocked = locked("restockAll", events, () -> {
+            requireLoaded();
+            int locationIndex = locationIndex(location);
+            List<InventoryItem> previous = new ArrayList<>(deltas.size());
+            for (UUID id : deltas.keySet()) {
+                InventoryItem item = lookup(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                if (item != null) {
+                    previous.add(item);
+                }
+            }
+            if (previous.isEmpty()) {
+                return List.<InventoryItem>of();
+            }
+            List<InventoryItem> next = new ArrayList<>(previous.size());
+            for (InventoryItem item : previous) {
+                int applied = locations.adjust(locationIndex, item.getIdMostSigBits(), item.getIdLeastSigBits(), deltas.get(item.getId()));
+                next.add(item.restock(applied));
+            }
+            upsert(next, events);
+            persist(events);
+            return next;
+        });
+        return restocked;
+    }
+
+    /**
+     * Moves {@code units} of the item between locations. The total is unchanged, but the item is republished
+     * with a new update time so listeners see the move.
+     */
+    public InventoryItem transfer(UUID id, String from, String to, int units) {
+        if (units <= 0) {
+            throw new IllegalArgumentException("Transfer must move at least one unit");
+        }
+        List<InventoryChangeEvent> events = new ArrayList<>();
+        InventoryItem moved = locked("transfer", events, () -> {
+            requireLoaded();
+            InventorySnapshot snapshot = current;
+            int index = position(snapshot, id);
+            if (index < 0) {
+                throw new IllegalArgumentException("Item not found: " + id);
+            }
+            InventoryItem previous = snapshot.get(index);
+            locations.transfer(locationIndex(from), locationIndex(to), previous.getIdMostSigBits(), previous.getIdLeastSigBits(), units);
+            InventoryItem next = previous.restock(0);
+            InventorySnapshot published = publish(snapshot.withReplaced(snapshot.version() + 1, index, next));
+            track(previous, next, published.version(), events);
+            persist(events);
+            return next;
+        });
+        return moved;
+    }
+
+    /**
+     * Units, value and low-stock counts for each location in {@link #getLocations()} order, followed by the
+     * chain-wide roll-up. Maintained incrementally as stock changes.
+     */
+    public List<LocationRollup> getLocationRollups() {
+        return locked("rollups", locations::rollups);
+    }
+
+    /**
+     * Sets the quantity at or below which an item counts as low stock in the roll-ups, recomputing them in parallel.
+     */
+    public void setLowStockThreshold(int threshold) {
+        locked("lowStockThreshold", () -> {
+            locations.setLowStockThreshold(threshold);
+            return null;
+        });
+    }
+
+    /**
+     * Items carried at {@code location} that are at or below the low-stock threshold there, in name order.
+     */
+    public List<InventoryItem> lowStockAt(String location) {
+        List<InventoryItem> items = locked("lowStockAt", () -> {
+            long[] ids = locations.lowStock(locationIndex(location));
+            List<InventoryItem> found = new ArrayList<>(ids.length / 2);
+            for (int i = 0; i < ids.length; i += 2) {
+                found.add(lookup(ids[i], ids[i + 1]));
+            }
+            return found;
+        });
+        items.sort(NAME_ORDER);
+        return items;
+    }
+
+    /**
+     * Runs {@code query} against the current items. A recent identical query is answered from the result
+     * cache, patched forward if items changed since. Otherwise the most selective index term narrows the
+     * candidates under the lock; without a usable index the current snapshot is scanned outside it by
+     * {@link InventoryScan}, in parallel when large. An unfiltered query in name order is answered with the
+     * snapshot itself, so no item is built until a row is read. Results come in the query's order and are
+     * read-only. Off-heap managers cache no results, as cached rows would hold items on the heap.
+     */
+    public InventoryQuery.Result query(InventoryQuery query) {
+        long start = System.nanoTime();
+        InventorySnapshot[] read = new InventorySnapshot[1];
+        double[] value = new double[1];
+        InventoryQuery.Result[] cached = new InventoryQuery.Result[1];
+        InventoryIndexes.Access[] chosen = new InventoryIndexes.Access[1];
+        boolean everything = query.root() == null && query.isNameOrdered();
+        List<InventoryItem> candidates = locked("query", () -> {
+            read[0] = current;
+            value[0] = totalValue;
+            if (everything) {
+                return null;
+            }
+            cached[0] = loaded && store == null ? resultCache.get(query, current.version()) : null;
+            if (cached[0] != null || indexes == null || query.root() == null) {
+                return null;
+            }
+            chosen[0] = indexes.plan(query, current.size());
+            return chosen[0] == null ? null : chosen[0].candidates();
+        });
+        if (cached[0] != null) {
+            metrics.increment("query.plan.cache");
+            metrics.recordTime("manager.query", System.nanoTime() - start);
+            return cached[0];
+        }
+        InventorySnapshot snapshot = read[0];
+        if (everything) {
+            metrics.increment("query.plan.snapshot");
+            metrics.recordTime("manager.query", System.nanoTime() - start);
+            return new InventoryQuery.Result(snapshot, "snapshot (" + snapshot.size() + " items)", value[0]);
+        }
+        String plan;
+        InventoryScan.Result scan;
+        if (candidates != null) {
+            scan = InventoryScan.filter(candidates, query::test);
+            InventoryScan.sort(scan.items(), query.order());
+            plan = chosen[0].toString();
+            metrics.increment("query.plan.index");
+        } else {
+            boolean parallel = InventoryScan.isParallel(snapshot);
+            scan = InventoryScan.filter(snapshot, query::test);
+            if (!query.isNameOrdered()) {
+                InventoryScan.sort(scan.items(), query.order());
+            }
+            plan = (parallel ? "parallel scan" : "scan") + " (" + snapshot.size() + " items)";
+            metrics.increment(parallel ? "query.plan.parallelScan" : "query.plan.scan");
+        }
+        List<InventoryItem> results = loaded && store == null
+                ? resultCache.put(query, snapshot.version(), scan.items(), scan.value())
+                : Collections.unmodifiableList(scan.items());
+        metrics.recordTime("manager.query", System.nanoTime() - start);
+        return new InventoryQuery.Result(results, plan, scan.value());
+    }
+
+    public Optional<InventoryItem> findById(UUID id) {
+        return locked("findById", () -> Optional.ofNullable(lookup(id.getMostSignificantBits(), id.getLeastSignificantBits())));
+    }
+
+    /**
+     * Item carrying barcode or SKU {@code sku}, found in O(1) without taking the lock, so scanning stays
+     * responsive while a save is in progress.
+     */
+    public Optional<InventoryItem> findBySku(String sku) {
+        return Optional.ofNullable(skuIndex.get(sku.strip()));
+    }
+
+    /**
+     * Inserts or replaces many items under a single lock acquisition and publishes one new version.
+     * Items whose id is already present replace the stored item; the rest are added. Runs in
+     * O(n + k log k) for k upserts, so large imports avoid a per-item search. When {@code persist} is
+     * false the caller is expected to call {@link #persist()} after its last batch.
+     *
+     * @throws IllegalArgumentException if the batch would leave two items with one SKU; nothing is applied then
+     */
+    public void applyBatch(Collection<InventoryItem> upserts, boolean persist) {
+        if (upserts.isEmpty()) {
+            return;
         }
-        throw new IllegalArgumentException("Item not found: " + id);
+        applyBatch(() -> upserts, persist);
     }
 
-    public synchronized void remove(UUID id) {
-        items.removeIf(item -> item.getId().equals(id));
-        persist();
+    /**
+     * Like {@link #applyBatch(Collection, boolean)}, but the upserts are built by {@code merge} under the lock,
+     * so {@link #findById} in it sees the current items and a batch derived from them cannot overwrite
+     * changes made while the caller was preparing it.
+     */
+    public void applyBatch(Supplier<? extends Collection<InventoryItem>> merge, boolean persist) {
+        List<InventoryChangeEvent> events = new ArrayList<>();
+        locked("applyBatch", events, () -> {
+            requireLoaded();
+            Collection<InventoryItem> upserts = merge.get();
+            if (upserts.isEmpty()) {
+                return null;
+            }
+            upsert(upserts, events);
+            if (persist) {
+                persist(events);
+            }
+            return null;
+        });
     }
 
-    public synchronized InventoryItem restock(UUID id, int delta) {
-        for (int i = 0; i < items.size(); i++) {
-            InventoryItem item = items.get(i);
-            if (item.getId().equals(id)) {
-                InventoryItem restocked = item.restock(delta);
-                items.set(i, restocked);
-                persist();
-                return restocked;
+    /**
+     * Inserts or replaces {@code upserts} as one new version; see {@link #applyBatch}. Called under the lock.
+     */
+    private void upsert(Collection<InventoryItem> upserts, List<InventoryChangeEvent> events) {
+        InventorySnapshot snapshot = current;
+        long version = snapshot.version() + 1;
+        Map<UUID, InventoryItem> pending = byId(upserts);
+        List<InventoryItem> conflicts = skuConflicts(pending);
+        if (!conflicts.isEmpty()) {
+            String sku = conflicts.get(0).getSku();
+            InventoryItem owner = skuIndex.get(sku);
+            throw new IllegalArgumentException(owner == null || pending.containsKey(owner.getId())
+                    ? "SKU " + sku + " is given to more than one item"
+                    : "SKU " + sku + " already belongs to " + owner.getName());
+        }
+        long[] changes = new long[pending.size()];
+        InventoryItem[] changed = new InventoryItem[pending.size()];
+        int changeCount = 0;
+        List<InventoryItem> inserts = new ArrayList<>();
+        for (InventoryItem item : pending.values()) {
+            InventoryItem existing = lookup(item.getIdMostSigBits(), item.getIdLeastSigBits());
+            if (existing == null) {
+                inserts.add(item);
+            } else {
+                int index = snapshot.indexOf(existing, NAME_ORDER);
+                boolean stays = NAME_ORDER.compare(existing, item) == 0;
+                changed[changeCount] = stays ? item : null;
+                changes[changeCount] = (long) index << 32 | changeCount;
+                changeCount++;
+                if (!stays) {
+                    inserts.add(item);
+                }
             }
+            track(existing, item, version, events);
+        }
+        Arrays.sort(changes, 0, changeCount);
+        int[] positions = new int[changeCount];
+        InventoryItem[] replacements = new InventoryItem[changeCount];
+        for (int i = 0; i < changeCount; i++) {
+            positions[i] = (int) (changes[i] >>> 32);
+            replacements[i] = changed[(int) changes[i]];
         }
-        throw new IllegalArgumentException("Item not found: " + id);
+        inserts.sort(NAME_ORDER);
+        publish(snapshot.withBatch(version, positions, replacements, inserts, NAME_ORDER));
     }
 
-    public synchronized Optional<InventoryItem> findById(UUID id) {
-        return items.stream().filter(it -> it.getId().equals(id)).findFirst();
+    /**
+     * Writes the current items, first merging whatever other programs changed in the file meanwhile so
+     * their edits are not overwritten.
+     */
+    public void persist() {
+        List<InventoryChangeEvent> events = new ArrayList<>();
+        locked("persist", events, () -> {
+            requireLoaded();
+            persist(events);
+            return null;
+        });
     }
 
-    public synchronized void persist() {
-        items.sort(Comparator.comparing(InventoryItem::getName, String.CASE_INSENSITIVE_ORDER));
-        storage.save(items);
+    /**
+     * Merges outside edits and saves items and location stock. Called under the lock, after any change is
+     * applied, so a failure is reported as an {@link UnsavedChangesException}.
+     */
+    private void persist(List<InventoryChangeEvent> events) {
+        try {
+            storage.save(changes -> {
+                mergeExternal(changes, events);
+                return current;
+            });
+            locations.save();
+        } catch (RuntimeException ex) {
+            throw new UnsavedChangesException(ex);
+        }
+    }
+
+    /**
+     * Folds in edits other programs made to the data file since it was last read or written and returns
+     * how many items changed. See {@link #mergeExternal}.
+     */
+    public int mergeExternalChanges() {
+        List<InventoryChangeEvent> events = new ArrayList<>();
+        int merged = locked("mergeExternal", events, () -> loaded ? mergeExternal(storage.pollExternalChanges(), events) : 0);
+        return merged;
+    }
+
+    /**
+     * Merges by id and update time: a file item replaces ours only when it was updated later, and is not
+     * re-added if we deleted it after its update. An item missing from the file is removed unless it was
+     * edited here after the file was last in sync. {@code changes} is null when there are none. Called under
+     * the lock.
+     */
+    private int mergeExternal(InventoryStorage.ExternalChanges changes, List<InventoryChangeEvent> events) {
+        if (changes == null) {
+            return 0;
+        }
+        Map<UUID, InventoryItem> upserts = new LinkedHashMap<>();
+        for (InventoryItem item : changes.getUpserts()) {
+            InventoryItem existing = lookup(item.getIdMostSigBits(), item.getIdLeastSigBits());
+            if (existing != null) {
+                if (item.getUpdatedAtMicros() > existing.getUpdatedAtMicros()) {
+                    upserts.put(item.getId(), item);
+                }
+            } else {
+                Long removed = removedAt.get(item.getId());
+                if (removed == null || item.getUpdatedAtMicros() > removed) {
+                    upserts.put(item.getId(), item);
+                }
+            }
+        }
+        // An outside edit that would give a second item a SKU is rejected; our copy wins on the next save.
+        List<InventoryItem> conflicts = skuConflicts(upserts);
+        for (InventoryItem item : conflicts) {
+            upserts.remove(item.getId());
+        }
+        metrics.add("manager.mergeExternal.duplicateSkus", conflicts.size());
+        if (!upserts.isEmpty()) {
+            upsert(upserts.values(), events);
+        }
+        int removedCount = 0;
+        for (UUID id : changes.getRemoved()) {
+            InventorySnapshot snapshot = current;
+            int index = position(snapshot, id);
+            if (index >= 0 && snapshot.get(index).getUpdatedAtMicros() <= changes.getPreviousSyncMicros()) {
+                InventorySnapshot next = publish(snapshot.withRemoved(snapshot.version() + 1, index));
+                track(snapshot.get(index), null, next.version(), events);
+                removedCount++;
+            }
+        }
+        metrics.add("manager.mergeExternal.upserts", upserts.size());
+        metrics.add("manager.mergeExternal.removals", removedCount);
+        return upserts.size() + removedCount;
+    }
+
+    private void requireLoaded() {
+        if (!loaded) {
+            throw new IllegalStateException("Inventory is still loading");
+        }
     }
 
     public InventoryStorage storage() {
         return storage;
     }
+
+    private static Path locationDirectory(Path storagePath) {
+        return storagePath.toAbsolutePath().resolveSibling("locations");
+    }
+
+    /**
+     * Rejects {@code item} if another item already carries its SKU. Called under the lock.
+     */
+    private void requireUniqueSku(InventoryItem item) {
+        if (item.getSku().isEmpty()) {
+            return;
+        }
+        InventoryItem owner = skuIndex.get(item.getSku());
+        if (owner != null && !item.hasId(owner.getId())) {
+            throw new IllegalArgumentException("SKU " + item.getSku() + " already belongs to " + owner.getName());
+        }
+    }
+
+    /**
+     * Items of {@code pending} whose SKU another item would still carry once they are applied, whether an
+     * item already holding it or an earlier one in {@code pending}. Called under the lock.
+     */
+    private List<InventoryItem> skuConflicts(Map<UUID, InventoryItem> pending) {
+        List<InventoryItem> conflicts = new ArrayList<>();
+        Map<String, InventoryItem> claimed = new HashMap<>();
+        for (InventoryItem item : pending.values()) {
+            String sku = item.getSku();
+            if (sku.isEmpty()) {
+                continue;
+            }
+            if (claimed.putIfAbsent(sku, item) != null) {
+                conflicts.add(item);
+                continue;
+            }
+            InventoryItem owner = skuIndex.get(sku);
+            if (owner != null && !item.hasId(owner.getId())) {
+                InventoryItem replacement = pending.get(owner.getId());
+                if (replacement == null || replacement.getSku().equals(sku)) {
+                    conflicts.add(item);
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * {@code items} keyed by id in order, the last of any repeated id winning.
+     */
+    private static Map<UUID, InventoryItem> byId(Collection<InventoryItem> items) {
+        Map<UUID, InventoryItem> byId = new LinkedHashMap<>(items.size() * 2);
+        for (InventoryItem item : items) {
+            byId.put(item.getId(), item);
+        }
+        return byId;
+    }
+
+    private int locationIndex(String name) {
+        int index = locations.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown location: " + name);
+        }
+        return index;
+    }
+
+    /**
+     * Replaces the item at {@code index}, moving it if the new name sorts elsewhere.
+     */
+    private static InventorySnapshot replace(InventorySnapshot snapshot, int index, InventoryItem updated) {
+        long version = snapshot.version() + 1;
+        if (NAME_ORDER.compare(snapshot.get(index), updated) == 0) {
+            return snapshot.withReplaced(version, index, updated);
+        }
+        InventorySnapshot removed = snapshot.withRemoved(version, index);
+        return removed.withInserted(version, insertionPoint(removed, updated), updated);
+    }
+
+    /**
+     * Position of the item with {@code id} in {@code snapshot}, or -1. Called under the lock.
+     */
+    private int position(InventorySnapshot snapshot, UUID id) {
+        InventoryItem existing = lookup(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        return existing == null ? -1 : snapshot.indexOf(existing, NAME_ORDER);
+    }
+
+    /**
+     * Current item with the given id bits, or null. Called under the lock.
+     */
+    private InventoryItem lookup(long most, long least) {
+        if (store == null) {
+            return idIndex.get(most, least);
+        }
+        int slot = store.find(most, least);
+        return slot < 0 ? null : store.get(slot);
+    }
+
+    /**
+     * Index after the last item whose name sorts at or before {@code item}'s name.
+     */
+    private static int insertionPoint(List<InventoryItem> items, InventoryItem item) {
+        int low = 0;
+        int high = items.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (NAME_ORDER.compare(items.get(mid), item) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Records an item change for listeners and updates the category and value aggregates. Called under the lock.
+     */
+    private void track(InventoryItem previous, InventoryItem next, long version, List<InventoryChangeEvent> events) {
+        InventoryChangeEvent event;
+        if (previous == null) {
+            event = InventoryChangeEvent.added(version, next);
+        } else if (next == null) {
+            event = InventoryChangeEvent.removed(version, previous);
+        } else {
+            event = InventoryChangeEvent.updated(version, previous, next);
+        }
+        events.add(event);
+        if (loaded) {
+            resultCache.record(event);
+        }
+        if (next == null) {
+            removedAt.put(previous.getId(), InventoryItem.toEpochMicros(LocalDateTime.now()));
+        } else if (previous == null && !removedAt.isEmpty()) {
+            removedAt.remove(next.getId());
+        }
+        String previousSku = previous == null ? "" : previous.getSku();
+        String nextSku = next == null ? "" : next.getSku();
+        if (loaded && !nextSku.isEmpty()) {
+            // Checked by requireUniqueSku or skuConflicts before any change.
+            skuIndex.put(nextSku, next);
+        } else if (!nextSku.isEmpty() && skuIndex.putIfAbsent(nextSku, next) != null) {
+            // A data file repeating a SKU: the first item loaded keeps it and the rest are counted.
+            metrics.increment("manager.load.duplicateSkus");
+        }
+        if (!previousSku.isEmpty() && !previousSku.equals(nextSku)) {
+            // Another item may have taken the SKU since; only drop the entry if it is still this item's.
+            skuIndex.computeIfPresent(previousSku, (sku, owner) -> owner.hasId(previous.getId()) ? null : owner);
+        }
+        if (indexes != null) {
+            indexes.update(previous, next);
+        }
+        if (store == null) {
+            // An off-heap store indexes its own records as snapshots write them.
+            if (next == null) {
+                idIndex.remove(previous);
+            } else {
+                idIndex.put(next);
+            }
+        }
+        if (loaded) {
+            // During loading the locations are read in one pass once all items are in.
+            locations.track(previous, next);
+        }
+        totalValue += event.getValueDelta();
+        String before = previous == null ? null : previous.getCategory();
+        String after = next == null ? null : next.getCategory();
+        if (!Objects.equals(before, after)) {
+            countCategory(before, -1, version, events);
+            countCategory(after, 1, version, events);
+        }
+    }
+
+    private void countCategory(String category, int delta, long version, List<InventoryChangeEvent> events) {
+        if (category == null || category.isBlank()) {
+            return;
+        }
+        int count = categoryCounts.getOrDefault(category, 0) + delta;
+        if (count <= 0) {
+            categoryCounts.remove(category);
+            events.add(InventoryChangeEvent.categoryRemoved(version, category));
+        } else {
+            categoryCounts.put(category, count);
+            if (count > 1) {
+                return;
+            }
+            events.add(InventoryChangeEvent.categoryAdded(version, category));
+        }
+        categories = List.copyOf(categoryCounts.keySet());
+    }
+
+    /**
+     * Delivers queued commits to the listeners outside the lock, so listeners may read the manager freely.
+     * Only one thread delivers at a time and it drains the queue in commit order, so two commits finishing
+     * on different threads cannot reach a listener out of version order. A listener that changes the
+     * inventory has that change delivered once the current commit has reached every listener. A listener that
+     * throws is counted under {@code manager.listener.errors} and reported to the thread's uncaught exception
+     * handler; the others still receive the commit.
+     */
+    private void deliver() {
+        if (dispatch.isHeldByCurrentThread()) {
+            return;
+        }
+        dispatch.lock();
+        try {
+            List<InventoryChangeEvent> events;
+            while ((events = undelivered.poll()) != null) {
+                for (InventoryChangeListener listener : listeners) {
+                    try {
+                        listener.inventoryChanged(events);
+                    } catch (RuntimeException ex) {
+                        // The change is committed: one failing listener must neither hide it from the others
+                        // nor fail the caller, so it is reported like an uncaught exception instead.
+                        metrics.increment("manager.listener.errors");
+                        Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+                    }
+                }
+            }
+        } finally {
+            dispatch.unlock();
+        }
+    }
+
+    private InventorySnapshot publish(InventorySnapshot next) {
+        current = next;
+        return next;
+    }
+
+    /**
+     * Runs a mutating {@code action} under the manager lock, then delivers {@code events}, the changes it
+     * tracked. They are queued before the lock is released, also when {@code action} fails part way (say the
+     * save after an in-memory change), so listeners see every committed change and in version order.
+     */
+    private <T> T locked(String operation, List<InventoryChangeEvent> events, Supplier<T> action) {
+        try {
+            return locked(operation, () -> {
+                try {
+                    return action.get();
+                } finally {
+                    if (!events.isEmpty()) {
+                        undelivered.add(Collections.unmodifiableList(events));
+                    }
+                }
+            });
+        } finally {
+            deliver();
+        }
+    }
+
+    /**
+     * Runs {@code action} under the manager lock, recording wait and hold times to metrics and JFR.
+     */
+    private <T> T locked(String operation, Supplier<T> action) {
+        InventoryEvents.LockEvent event = new InventoryEvents.LockEvent();
+        long requested = System.nanoTime();
+        lock.lock();
+        long acquired = System.nanoTime();
+        event.begin();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+            long released = System.nanoTime();
+            event.end();
+            metrics.recordTime("manager." + operation + ".wait", acquired - requested);
+            metrics.recordTime("manager." + operation + ".hold", released - acquired);
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.waitTime = acquired - requested;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * A version held open for reading; see {@link #pin()}.
+     */
+    public final class Pin implements AutoCloseable {
+        private final InventorySnapshot snapshot;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Pin(InventorySnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        public InventorySnapshot snapshot() {
+            return snapshot;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                pinnedVersions.computeIfPresent(snapshot.version(), (version, count) -> count == 1 ? null : count - 1);
+            }
+        }
+    }
 }
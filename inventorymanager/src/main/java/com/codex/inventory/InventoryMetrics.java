@@ -0,0 +1,181 @@
+package com.codex.inventory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters, timers and value histograms for persistence, locking, filtering and rendering.
+ * Published over JMX as {@value #OBJECT_NAME}.
+ */
+public final class InventoryMetrics implements InventoryMetricsMXBean {
+    public static final String OBJECT_NAME = "com.codex.inventory:type=Metrics";
+    private static final InventoryMetrics GLOBAL = new InventoryMetrics();
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> distributions = new ConcurrentHashMap<>();
+
+    private InventoryMetrics() {
+    }
+
+    public static InventoryMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server. Safe to call more than once.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException ignored) {
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register inventory metrics", e);
+        }
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    public void recordTime(String name, long nanos) {
+        timers.computeIfAbsent(name, key -> new Histogram()).record(nanos);
+    }
+
+    public void recordValue(String name, long value) {
+        distributions.computeIfAbsent(name, key -> new Histogram()).record(value);
+    }
+
+    public long getCounter(String name) {
+        LongAdder adder = counters.get(name);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counters.forEach((name, adder) -> snapshot.put(name, adder.sum()));
+        return snapshot;
+    }
+
+    @Override
+    public Map<String, Summary> getTimers() {
+        Map<String, Summary> snapshot = new TreeMap<>();
+        timers.forEach((name, histogram) -> snapshot.put(name, histogram.summarize(NANOS_PER_MILLI)));
+        return snapshot;
+    }
+
+    @Override
+    public Map<String, Summary> getDistributions() {
+        Map<String, Summary> snapshot = new TreeMap<>();
+        distributions.forEach((name, histogram) -> snapshot.put(name, histogram.summarize(1.0)));
+        return snapshot;
+    }
+
+    @Override
+    public void reset() {
+        counters.clear();
+        timers.clear();
+        distributions.clear();
+    }
+
+    /**
+     * Lock-free histogram with power-of-two buckets; percentiles are reported as bucket upper bounds.
+     */
+    private static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            long safe = Math.max(0, value);
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(safe | 1));
+            count.increment();
+            sum.add(safe);
+            max.accumulateAndGet(safe, Math::max);
+        }
+
+        Summary summarize(double scale) {
+            long total = count.sum();
+            double mean = total == 0 ? 0 : sum.sum() / (double) total / scale;
+            return new Summary(
+                    total,
+                    mean,
+                    max.get() / scale,
+                    percentile(total, 0.50) / scale,
+                    percentile(total, 0.99) / scale
+            );
+        }
+
+        private long percentile(long total, double fraction) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(max.get(), (2L << i) - 1);
+                }
+            }
+            return max.get();
+        }
+    }
+
+    /**
+     * Point-in-time view of a timer (milliseconds) or value distribution (raw units).
+     */
+    public static final class Summary {
+        private final long count;
+        private final double mean;
+        private final double max;
+        private final double p50;
+        private final double p99;
+
+        @ConstructorProperties({"count", "mean", "max", "p50", "p99"})
+        public Summary(long count, double mean, double max, double p50, double p99) {
+            this.count = count;
+            this.mean = mean;
+            this.max = max;
+            this.p50 = p50;
+            this.p99 = p99;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.codex.inventory;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link InventoryMetrics}.
+ */
+public interface InventoryMetricsMXBean {
+    Map<String, Long> getCounters();
+
+    Map<String, InventoryMetrics.Summary> getTimers();
+
+    Map<String, InventoryMetrics.Summary> getDistributions();
+
+    void reset();
+}
@@ -0,0 +1,699 @@
+package com.codex.inventory;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Parsed filter-bar query: a predicate tree plus a sort order.
+ * <p>
+ * Terms are separated by spaces and must all match; {@code OR} between terms, {@code -term} or
+ * {@code NOT term} and parentheses combine them further. A bare word matches names and categories as a
+ * substring. Field terms:
+ * <ul>
+ *     <li>{@code category:Dairy}, {@code unit:kg} – case-insensitive equality</li>
+ *     <li>{@code name:milk} – substring of the name only; {@code name=milk} for the whole name</li>
+ *     <li>{@code qty<10}, {@code price>=2.5}, {@code value>100} – with {@code < <= > >= =} or {@code :}</li>
+ *     <li>{@code expires<7d} – expiring within a number of days ({@code d}) or weeks ({@code w}) from today,
+ *     or relative to a {@code yyyy-MM-dd} date; items without a date never match</li>
+ *     <li>{@code sort:value}, {@code sort:-qty} – order by name, category, qty, price, value, expires or
+ *     updated, descending with {@code -}</li>
+ * </ul>
+ * Double quotes keep spaces and keywords inside a single word or value, as in {@code category:"Frozen Foods"}.
+ */
+public final class InventoryQuery {
+    private static final Comparator<InventoryItem> NAME_ORDER =
+            Comparator.comparing(InventoryItem::getName, String.CASE_INSENSITIVE_ORDER);
+    private static final InventoryQuery ALL = new InventoryQuery(null, NAME_ORDER, "");
+
+    private final Node root;
+    private final Comparator<InventoryItem> order;
+    private final String sort;
+
+    private InventoryQuery(Node root, Comparator<InventoryItem> order, String sort) {
+        this.root = root;
+        this.order = order;
+        this.sort = sort;
+    }
+
+    public static InventoryQuery all() {
+        return ALL;
+    }
+
+    /**
+     * Parses {@code text}; relative dates are resolved against today.
+     *
+     * @throws IllegalArgumentException describing the first problem found
+     */
+    public static InventoryQuery parse(String text) {
+        return new Parser(tokenize(text), LocalDate.now()).query();
+    }
+
+    /**
+     * Matches names and categories containing {@code text}, the filter bar's behaviour before queries.
+     */
+    public static InventoryQuery matching(String text) {
+        String needle = text.strip();
+        return needle.isEmpty() ? ALL : new InventoryQuery(new Contains(needle, false), NAME_ORDER, "");
+    }
+
+    public static InventoryQuery inCategory(String category) {
+        return new InventoryQuery(new Equals(Field.CATEGORY, category), NAME_ORDER, "");
+    }
+
+    public static InventoryQuery quantityAtMost(int threshold) {
+        return new InventoryQuery(new Range(Field.QUANTITY, Double.NEGATIVE_INFINITY, true, threshold, true), NAME_ORDER, "");
+    }
+
+    /**
+     * Items matching both queries, in this query's order unless only {@code other} names one.
+     */
+    public InventoryQuery and(InventoryQuery other) {
+        Node combined;
+        if (root == null) {
+            combined = other.root;
+        } else if (other.root == null) {
+            combined = root;
+        } else {
+            List<Node> terms = new ArrayList<>();
+            terms.addAll(root instanceof And ? ((And) root).terms : List.of(root));
+            terms.addAll(other.root instanceof And ? ((And) other.root).terms : List.of(other.root));
+            combined = new And(terms);
+        }
+        return sort.isEmpty() ? new InventoryQuery(combined, other.order, other.sort) : new InventoryQuery(combined, order, sort);
+    }
+
+    public boolean test(InventoryItem item) {
+        return root == null || root.test(item);
+    }
+
+    /**
+     * Matching items of {@code items} in query order, without consulting any index.
+     */
+    public List<InventoryItem> filter(List<InventoryItem> items) {
+        List<InventoryItem> matches = root == null
+                ? new ArrayList<>(items)
+                : items.stream().filter(root::test).collect(Collectors.toList());
+        matches.sort(order);
+        return matches;
+    }
+
+    public Comparator<InventoryItem> order() {
+        return order;
+    }
+
+    /**
+     * Whether results come in the manager's own name order, so rows can be patched in place.
+     */
+    public boolean isNameOrdered() {
+        return sort.isEmpty();
+    }
+
+    Node root() {
+        return root;
+    }
+
+    @Override
+    public String toString() {
+        String predicate = root == null ? "" : root.toString();
+        String sorting = sort.isEmpty() ? "" : "sort:" + sort;
+        return predicate.isEmpty() || sorting.isEmpty() ? predicate + sorting : predicate + " " + sorting;
+    }
+
+    enum Field {
+        NAME("name"),
+        CATEGORY("category"),
+        UNIT("unit"),
+        QUANTITY("qty"),
+        PRICE("price"),
+        VALUE("value"),
+        EXPIRES("expires"),
+        UPDATED("updated");
+
+        private final String label;
+
+        Field(String label) {
+            this.label = label;
+        }
+
+        static Field named(String name) {
+            switch (name.toLowerCase(Locale.ROOT)) {
+                case "name":
+                    return NAME;
+                case "category":
+                case "cat":
+                    return CATEGORY;
+                case "unit":
+                    return UNIT;
+                case "qty":
+                case "quantity":
+                    return QUANTITY;
+                case "price":
+                    return PRICE;
+                case "value":
+                    return VALUE;
+                case "expires":
+                case "expiry":
+                case "expiration":
+                    return EXPIRES;
+                case "updated":
+                    return UPDATED;
+                default:
+                    return null;
+            }
+        }
+
+        private boolean isNumeric() {
+            return this == QUANTITY || this == PRICE || this == VALUE || this == EXPIRES;
+        }
+
+        private Comparator<InventoryItem> order() {
+            switch (this) {
+                case CATEGORY:
+                    return Comparator.comparing(InventoryItem::getCategory, String.CASE_INSENSITIVE_ORDER);
+                case QUANTITY:
+                    return Comparator.comparingInt(InventoryItem::getQuantity);
+                case PRICE:
+                    return Comparator.comparingDouble(InventoryItem::getPrice);
+                case VALUE:
+                    return Comparator.comparingDouble(item -> item.getPrice() * item.getQuantity());
+                case EXPIRES:
+                    // Items that never expire sort after every dated one.
+                    return Comparator.comparingLong(item -> item.getExpirationEpochDay() == InventoryItem.NO_EXPIRATION
+                            ? Long.MAX_VALUE
+                            : item.getExpirationEpochDay());
+                case UPDATED:
+                    return Comparator.comparingLong(InventoryItem::getUpdatedAtMicros);
+                default:
+                    return NAME_ORDER;
+            }
+        }
+    }
+
+    abstract static class Node {
+        abstract boolean test(InventoryItem item);
+    }
+
+    static final class And extends Node {
+        final List<Node> terms;
+
+        And(List<Node> terms) {
+            this.terms = List.copyOf(terms);
+        }
+
+        @Override
+        boolean test(InventoryItem item) {
+            for (Node term : terms) {
+                if (!term.test(item)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return terms.stream().map(term -> term instanceof Or ? "(" + term + ")" : term.toString()).collect(Collectors.joining(" "));
+        }
+    }
+
+    static final class Or extends Node {
+        final List<Node> terms;
+
+        Or(List<Node> terms) {
+            this.terms = List.copyOf(terms);
+        }
+
+        @Override
+        boolean test(InventoryItem item) {
+            for (Node term : terms) {
+                if (term.test(item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return terms.stream().map(term -> term instanceof And ? "(" + term + ")" : term.toString()).collect(Collectors.joining(" OR "));
+        }
+    }
+
+    static final class Not extends Node {
+        final Node term;
+
+        Not(Node term) {
+            this.term = term;
+        }
+
+        @Override
+        boolean test(InventoryItem item) {
+            return !term.test(item);
+        }
+
+        @Override
+        public String toString() {
+            return term instanceof And || term instanceof Or ? "-(" + term + ")" : "-" + term;
+        }
+    }
+
+    /**
+     * Case-insensitive substring of the name, and of the category unless {@code nameOnly}.
+     */
+    static final class Contains extends Node {
+        final String needle;
+        final boolean nameOnly;
+
+        Contains(String needle, boolean nameOnly) {
+            this.needle = needle.toLowerCase(Locale.ROOT);
+            this.nameOnly = nameOnly;
+        }
+
+        @Override
+        boolean test(InventoryItem item) {
+            return containsIgnoreCase(item.getName()) || !nameOnly && containsIgnoreCase(item.getCategory());
+        }
+
+        /**
+         * Compares in place against the lower-cased needle, so scans allocate nothing per item.
+         */
+        private boolean containsIgnoreCase(String text) {
+            int length = needle.length();
+            for (int i = 0, last = text.length() - length; i <= last; i++) {
+                int j = 0;
+                while (j < length && lowerCase(text.charAt(i + j)) == needle.charAt(j)) {
+                    j++;
+                }
+                if (j == length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static char lowerCase(char c) {
+            if (c < 128) {
+                return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+            }
+            return Character.toLowerCase(c);
+        }
+
+        @Override
+        public String toString() {
+            return (nameOnly ? "name:" : "") + quote(needle);
+        }
+    }
+
+    /**
+     * Case-insensitive equality of a text field.
+     */
+    static final class Equals extends Node {
+        final Field field;
+        final String value;
+
+        Equals(Field field, String value) {
+            this.field = field;
+            this.value = value.strip();
+        }
+
+        @Override
+        boolean test(InventoryItem item) {
+            switch (field) {
+                case NAME:
+                    return item.getName().equalsIgnoreCase(value);
+                case CATEGORY:
+                    return item.getCategory().equalsIgnoreCase(value);
+                default:
+                    return item.getUnit().equalsIgnoreCase(value);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return field.label + (field == Field.NAME ? "=" : ":") + quote(value);
+        }
+    }
+
+    /**
+     * Numeric interval; expiration bounds are epoch days and exclude items without a date.
+     */
+    static final class Range extends Node {
+        final Field field;
+        final double low;
+        final boolean lowInclusive;
+        final double high;
+        final boolean highInclusive;
+
+        Range(Field field, double low, boolean lowInclusive, double high, boolean highInclusive) {
+            this.field = field;
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.high = high;
+            this.highInclusive = highInclusive;
+        }
+
+        @Override
+        boolean test(InventoryItem item) {
+            double value;
+            switch (field) {
+                case QUANTITY:
+                    value = item.getQuantity();
+                    break;
+                case PRICE:
+                    value = item.getPrice();
+                    break;
+                case VALUE:
+                    value = item.getPrice() * item.getQuantity();
+                    break;
+                default:
+                    if (item.getExpirationEpochDay() == InventoryItem.NO_EXPIRATION) {
+                        return false;
+                    }
+                    value = item.getExpirationEpochDay();
+                    break;
+            }
+            return (lowInclusive ? value >= low : value > low) && (highInclusive ? value <= high : value < high);
+        }
+
+        /**
+         * Smallest integer inside the interval.
+         */
+        int lowInt() {
+            double bound = lowInclusive ? Math.ceil(low) : Math.floor(low) + 1;
+            return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, bound));
+        }
+
+        /**
+         * Largest integer inside the interval.
+         */
+        int highInt() {
+            double bound = highInclusive ? Math.floor(high) : Math.ceil(high) - 1;
+            return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, bound));
+        }
+
+        @Override
+        public String toString() {
+            String lowText = bound(low);
+            String highText = bound(high);
+            if (low == high) {
+                return field.label + "=" + lowText;
+            }
+            if (low == Double.NEGATIVE_INFINITY) {
+                return field.label + (highInclusive ? "<=" : "<") + highText;
+            }
+            if (high == Double.POSITIVE_INFINITY) {
+                return field.label + (lowInclusive ? ">=" : ">") + lowText;
+            }
+            return field.label + (lowInclusive ? ">=" : ">") + lowText + " " + field.label + (highInclusive ? "<=" : "<") + highText;
+        }
+
+        private String bound(double value) {
+            if (field == Field.EXPIRES && !Double.isInfinite(value)) {
+                return LocalDate.ofEpochDay((long) value).toString();
+            }
+            return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+        }
+    }
+
+    private static String quote(String text) {
+        return text.isEmpty() || text.chars().anyMatch(c -> Character.isWhitespace(c) || c == '(' || c == ')')
+                ? "\"" + text + "\""
+                : text;
+    }
+
+    private static final class Token {
+        final String text;
+        final boolean quoted;
+
+        Token(String text, boolean quoted) {
+            this.text = text;
+            this.quoted = quoted;
+        }
+
+        boolean is(String keyword) {
+            return !quoted && text.equals(keyword);
+        }
+    }
+
+    private static List<Token> tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean quoted = false;
+        boolean inQuotes = false;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (inQuotes && i < text.length()) {
+                if (c == '"') {
+                    inQuotes = false;
+                } else {
+                    word.append(c);
+                }
+            } else if (c == '"' && i < text.length()) {
+                inQuotes = true;
+                quoted |= word.length() == 0;
+            } else if (Character.isWhitespace(c) || c == '(' || c == ')') {
+                if (word.length() > 0 || quoted) {
+                    tokens.add(new Token(word.toString(), quoted));
+                    word.setLength(0);
+                    quoted = false;
+                }
+                if (c == '(' || c == ')') {
+                    tokens.add(new Token(String.valueOf(c), false));
+                }
+            } else {
+                word.append(c);
+            }
+        }
+        if (inQuotes) {
+            throw new IllegalArgumentException("Unclosed quote");
+        }
+        return tokens;
+    }
+
+    /**
+     * Recursive descent: {@code query := or; or := and ("OR" and)*; and := unary+; unary := ("-" | "NOT")
+     * unary | "(" or ")" | term}.
+     */
+    private static final class Parser {
+        private final List<Token> tokens;
+        private final LocalDate today;
+        private int position;
+        private Field sortField;
+        private boolean descending;
+
+        Parser(List<Token> tokens, LocalDate today) {
+            this.tokens = tokens;
+            this.today = today;
+        }
+
+        InventoryQuery query() {
+            Node root = or();
+            if (position < tokens.size()) {
+                throw new IllegalArgumentException("Unexpected '" + tokens.get(position).text + "'");
+            }
+            if (sortField == null) {
+                return new InventoryQuery(root, NAME_ORDER, "");
+            }
+            Comparator<InventoryItem> order = sortField.order();
+            if (descending) {
+                order = order.reversed();
+            }
+            return new InventoryQuery(root, order.thenComparing(NAME_ORDER), (descending ? "-" : "") + sortField.label);
+        }
+
+        private Node or() {
+            List<Node> terms = new ArrayList<>();
+            Node first = and();
+            if (first != null) {
+                terms.add(first);
+            }
+            while (position < tokens.size() && tokens.get(position).is("OR")) {
+                position++;
+                Node next = and();
+                if (next == null || terms.isEmpty()) {
+                    throw new IllegalArgumentException("OR needs a term on both sides");
+                }
+                terms.add(next);
+            }
+            return terms.isEmpty() ? null : terms.size() == 1 ? terms.get(0) : new Or(terms);
+        }
+
+        private Node and() {
+            List<Node> terms = new ArrayList<>();
+            while (position < tokens.size() && !tokens.get(position).is("OR") && !tokens.get(position).is(")")) {
+                Node term = unary();
+                if (term != null) {
+                    terms.add(term);
+                }
+            }
+            return terms.isEmpty() ? null : terms.size() == 1 ? terms.get(0) : new And(terms);
+        }
+
+        private Node unary() {
+            Token token = tokens.get(position++);
+            if (token.is("NOT")) {
+                return negate(position < tokens.size() ? unary() : null);
+            }
+            if (token.is("(")) {
+                Node inner = or();
+                if (position >= tokens.size() || !tokens.get(position).is(")")) {
+                    throw new IllegalArgumentException("Missing ')'");
+                }
+                position++;
+                return inner;
+            }
+            if (!token.quoted && token.text.length() > 1 && token.text.startsWith("-")) {
+                return negate(term(new Token(token.text.substring(1), false)));
+            }
+            if (!token.quoted && token.text.equals("-") && position < tokens.size()) {
+                return negate(unary());
+            }
+            return term(token);
+        }
+
+        private Node negate(Node term) {
+            if (term == null) {
+                throw new IllegalArgumentException("Nothing to negate");
+            }
+            return new Not(term);
+        }
+
+        private Node term(Token token) {
+            String text = token.text;
+            int operator = token.quoted ? -1 : operatorIndex(text);
+            if (operator <= 0) {
+                return new Contains(text, false);
+            }
+            String key = text.substring(0, operator);
+            String op = text.charAt(operator) == ':' || text.charAt(operator) == '='
+                    || operator + 1 == text.length() || text.charAt(operator + 1) != '='
+                    ? text.substring(operator, operator + 1)
+                    : text.substring(operator, operator + 2);
+            String value = text.substring(operator + op.length());
+            if (key.equalsIgnoreCase("sort")) {
+                sort(value);
+                return null;
+            }
+            Field field = Field.named(key);
+            if (field == null) {
+                return new Contains(text, false);
+            }
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException("Missing value after '" + key + op + "'");
+            }
+            if (field == Field.NAME && op.equals(":")) {
+                return new Contains(value, true);
+            }
+            if (!field.isNumeric()) {
+                if (!op.equals(":") && !op.equals("=")) {
+                    throw new IllegalArgumentException("'" + key + "' only supports ':'");
+                }
+                return new Equals(field, value);
+            }
+            double number = field == Field.EXPIRES ? epochDay(value) : number(key, value);
+            switch (op) {
+                case "<":
+                    return new Range(field, Double.NEGATIVE_INFINITY, true, number, false);
+                case "<=":
+                    return new Range(field, Double.NEGATIVE_INFINITY, true, number, true);
+                case ">":
+                    return new Range(field, number, false, Double.POSITIVE_INFINITY, true);
+                case ">=":
+                    return new Range(field, number, true, Double.POSITIVE_INFINITY, true);
+                default:
+                    return new Range(field, number, true, number, true);
+            }
+        }
+
+        private void sort(String value) {
+            descending = value.startsWith("-");
+            String name = descending ? value.substring(1) : value;
+            sortField = Field.named(name);
+            if (sortField == null || sortField == Field.UNIT) {
+                throw new IllegalArgumentException("Unknown sort key '" + name + "'");
+            }
+        }
+
+        private static int operatorIndex(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == ':' || c == '<' || c == '>' || c == '=') {
+                    return i;
+                }
+                if (!Character.isLetter(c)) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        private static double number(String key, String value) {
+            String digits = value.startsWith("$") ? value.substring(1) : value;
+            try {
+                double number = Double.parseDouble(digits);
+                if (Double.isNaN(number)) {
+                    throw new NumberFormatException();
+                }
+                return number;
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("'" + key + "' needs a number, got '" + value + "'");
+            }
+        }
+
+        /**
+         * {@code 7d}, {@code 2w} or a plain day count from today, or an ISO date.
+         */
+        private double epochDay(String value) {
+            String lower = value.toLowerCase(Locale.ROOT);
+            int unit = lower.endsWith("w") ? 7 : 1;
+            String count = lower.endsWith("w") || lower.endsWith("d") ? lower.substring(0, lower.length() - 1) : lower;
+            try {
+                return today.toEpochDay() + Math.multiplyExact(Long.parseLong(count), unit);
+            } catch (NumberFormatException | ArithmeticException ex) {
+                try {
+                    return LocalDate.parse(value).toEpochDay();
+                } catch (DateTimeParseException dateEx) {
+                    throw new IllegalArgumentException("'expires' needs days like 7d, weeks like 2w or a yyyy-MM-dd date, got '" + value + "'");
+                }
+            }
+        }
+    }
+
+    /**
+     * Matching items together with how they were found.
+     */
+    public static final class Result {
+        private final List<InventoryItem> items;
+        private final String plan;
+        private final double totalValue;
+
+        Result(List<InventoryItem> items, String plan, double totalValue) {
+            this.items = items;
+            this.plan = plan;
+            this.totalValue = totalValue;
+        }
+
+        public List<InventoryItem> getItems() {
+            return items;
+        }
+
+        /**
+         * Sum of price × quantity over the items, computed with them.
+         */
+        public double getTotalValue() {
+            return totalValue;
+        }
+
+        /**
+         * Human-readable access path, such as {@code index category (12 candidates)} or {@code parallel scan}.
+         */
+        public String getPlan() {
+            return plan;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.codex.inventory;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Scan mode for receiving deliveries with a keyboard-wedge barcode scanner.
+ * <p>
+ * Each scan arrives as typed characters followed by Enter (or Tab) and is resolved through the manager's
+ * SKU index; {@code 12*SKU} counts a case of twelve. Counts accumulate per item and are committed in the
+ * background as a single {@link InventoryManager#restockAll} every {@value #COMMIT_MILLIS} ms, on
+ * <em>Commit now</em> and on close, so the field stays responsive however fast scans come in.
+ */
+public final class InventoryReceivingDialog extends JDialog {
+    private static final int COMMIT_MILLIS = 5_000;
+    private static final int MAX_MULTIPLIER = 10_000;
+
+    private final InventoryManager manager;
+    private final Consumer<String> onCommitted;
+    private final JTextField scanField = new JTextField(24);
+    private final JComboBox<String> location;
+    private final JLabel status = new JLabel(" ");
+    private final ScanTableModel lines = new ScanTableModel();
+    private final Timer commitTimer = new Timer(COMMIT_MILLIS, e -> commit());
+    private final InventoryMetrics metrics = InventoryMetrics.global();
+    private Map<UUID, Integer> pending = new LinkedHashMap<>();
+    private boolean committing;
+    private boolean closeWhenCommitted;
+    private int scans;
+    private int committedUnits;
+
+    /**
+     * @param onCommitted told a short summary after each batch is saved
+     */
+    public InventoryReceivingDialog(JFrame owner, InventoryManager manager, Consumer<String> onCommitted) {
+        super(owner, "Receive by scan", false);
+        this.manager = manager;
+        this.onCommitted = onCommitted;
+        this.location = new JComboBox<>(manager.getLocations().toArray(new String[0]));
+        buildUi();
+        setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                close();
+            }
+        });
+        setMinimumSize(new Dimension(520, 420));
+        pack();
+        setLocationRelativeTo(owner);
+        commitTimer.start();
+    }
+
+    private void buildUi() {
+        JPanel content = new JPanel(new BorderLayout(8, 8));
+        content.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+
+        JPanel top = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(4, 4, 4, 4);
+        gbc.anchor = GridBagConstraints.WEST;
+        if (location.getItemCount() > 1) {
+            top.add(new JLabel("Location"), gbc);
+            gbc.gridx = 1;
+            top.add(location, gbc);
+            gbc.gridy = 1;
+        }
+        gbc.gridx = 0;
+        top.add(new JLabel("Scan"), gbc);
+        gbc.gridx = 1;
+        gbc.weightx = 1;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        scanField.setFont(scanField.getFont().deriveFont(Font.BOLD, scanField.getFont().getSize2D() + 6));
+        scanField.setToolTipText("Scan a barcode, or type a SKU and press Enter; 12*SKU receives twelve");
+        scanField.addActionListener(e -> onScan());
+        // Some scanners end each code with Tab instead of Enter.
+        scanField.setFocusTraversalKeysEnabled(false);
+        scanField.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_TAB, 0), "scan");
+        scanField.getActionMap().put("scan", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                onScan();
+            }
+        });
+        top.add(scanField, gbc);
+        content.add(top, BorderLayout.NORTH);
+
+        JTable table = new JTable(lines);
+        table.setFocusable(false);
+        table.setRowHeight(24);
+        content.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel footer = new JPanel(new BorderLayout());
+        footer.add(status, BorderLayout.CENTER);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton commitNow = new JButton("Commit now");
+        commitNow.setFocusable(false);
+        commitNow.addActionListener(e -> commit());
+        JButton done = new JButton("Done");
+        done.setFocusable(false);
+        done.addActionListener(e -> close());
+        buttons.add(commitNow);
+        buttons.add(done);
+        footer.add(buttons, BorderLayout.EAST);
+        content.add(footer, BorderLayout.SOUTH);
+        setContentPane(content);
+    }
+
+    private void onScan() {
+        String text = scanField.getText().strip();
+        scanField.setText("");
+        if (text.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int units = 1;
+        String sku = text;
+        int star = text.indexOf('*');
+        if (star > 0) {
+            try {
+                units = Integer.parseInt(text.substring(0, star).strip());
+                sku = text.substring(star + 1).strip();
+            } catch (NumberFormatException ex) {
+                units = 0;
+            }
+            if (units <= 0 || units > MAX_MULTIPLIER) {
+                reject("Count must be 1–" + MAX_MULTIPLIER + ": " + text);
+                return;
+            }
+        }
+        InventoryItem item = manager.findBySku(sku).orElse(null);
+        if (item == null) {
+            reject("Unknown SKU " + sku + " — assign it to an item with Edit");
+            return;
+        }
+        pending.merge(item.getId(), units, Integer::sum);
+        lines.add(item, sku, units);
+        scans++;
+        metrics.increment("receiving.scans");
+        metrics.recordTime("receiving.scan", System.nanoTime() - start);
+        showStatus("+" + units + " " + item.getName());
+    }
+
+    private void reject(String message) {
+        Toolkit.getDefaultToolkit().beep();
+        metrics.increment("receiving.rejected");
+        showStatus(message);
+    }
+
+    /**
+     * Hands everything scanned so far to a background restock; scans keep accumulating meanwhile.
+     */
+    private void commit() {
+        if (committing || pending.isEmpty()) {
+            if (!committing && closeWhenCommitted) {
+                finishClose();
+            }
+            return;
+        }
+        Map<UUID, Integer> batch = pending;
+        pending = new LinkedHashMap<>();
+        committing = true;
+        String target = (String) location.getSelectedItem();
+        new SwingWorker<List<InventoryItem>, Void>() {
+            @Override
+            protected List<InventoryItem> doInBackground() {
+                return manager.restockAll(target, batch);
+            }
+
+            @Override
+            protected void done() {
+                committing = false;
+                try {
+                    Set<UUID> saved = new HashSet<>();
+                    int units = 0;
+                    for (InventoryItem item : get()) {
+                        saved.add(item.getId());
+                        units += batch.get(item.getId());
+                    }
+                    int dropped = batch.values().stream().mapToInt(Integer::intValue).sum() - units;
+                    committedUnits += units;
+                    lines.committed(batch, saved);
+                    if (!saved.isEmpty()) {
+                        onCommitted.accept("Received " + units + " units of " + saved.size() + " items at " + target);
+                    }
+                    showStatus(dropped == 0 ? "Saved " + units + " units"
+                            : "Saved " + units + " units; dropped " + dropped + " of items deleted since they were scanned");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof UnsavedChangesException) {
+                        unsaved(batch, e.getCause());
+                    } else {
+                        failed(batch, e.getCause());
+                        return;
+                    }
+                }
+                if (!pending.isEmpty() && closeWhenCommitted) {
+                    commit();
+                } else if (closeWhenCommitted) {
+                    finishClose();
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Records a batch that was received but not saved. It is not queued again, which would receive it twice;
+     * the next save of the inventory writes it.
+     */
+    private void unsaved(Map<UUID, Integer> batch, Throwable cause) {
+        Set<UUID> applied = new HashSet<>();
+        int units = 0;
+        for (Map.Entry<UUID, Integer> entry : batch.entrySet()) {
+            if (manager.findById(entry.getKey()).isPresent()) {
+                applied.add(entry.getKey());
+                units += entry.getValue();
+            }
+        }
+        committedUnits += units;
+        lines.committed(batch, applied);
+        onCommitted.accept("Received " + units + " units but could not save them yet");
+        showStatus("Received " + units + " units, not yet saved");
+        commitTimer.stop();
+        JOptionPane.showMessageDialog(this, cause.getMessage() + "\n\nThe scans are received; they are saved with the next change.",
+                "Receive by scan", JOptionPane.WARNING_MESSAGE);
+        commitTimer.restart();
+    }
+
+    /**
+     * Puts a batch that failed to save back into the pending counts, so nothing scanned is lost, and tells the
+     * user. The timer is held while the error is up so retries do not stack dialogs; when closing, the user
+     * may discard the scans instead of retrying.
+     */
+    private void failed(Map<UUID, Integer> batch, Throwable cause) {
+        batch.forEach((id, units) -> pending.merge(id, units, Integer::sum));
+        commitTimer.stop();
+        String message = "Unable to save scans: " + cause.getMessage();
+        if (closeWhenCommitted) {
+            int waiting = pending.values().stream().mapToInt(Integer::intValue).sum();
+            int choice = JOptionPane.showConfirmDialog(this, message + "\n\nDiscard " + waiting + " unsaved units and close?",
+                    "Receive by scan", JOptionPane.YES_NO_OPTION, JOptionPane.ERROR_MESSAGE);
+            if (choice == JOptionPane.YES_OPTION) {
+                finishClose();
+                return;
+            }
+            closeWhenCommitted = false;
+            scanField.setEnabled(true);
+        } else {
+            JOptionPane.showMessageDialog(this, message, "Receive by scan", JOptionPane.ERROR_MESSAGE);
+        }
+        commitTimer.restart();
+    }
+
+    private void close() {
+        closeWhenCommitted = true;
+        scanField.setEnabled(false);
+        commit();
+    }
+
+    private void finishClose() {
+        commitTimer.stop();
+        dispose();
+    }
+
+    private void showStatus(String message) {
+        int waiting = pending.values().stream().mapToInt(Integer::intValue).sum();
+        status.setText(message + " • " + scans + " scans, " + committedUnits + " saved, " + waiting + " pending");
+    }
+
+    /**
+     * One row per item scanned this session, with units pending and saved.
+     */
+    private static final class ScanTableModel extends AbstractTableModel {
+        private final String[] columns = {"Item", "SKU", "Pending", "Saved"};
+        private final List<Line> rows = new ArrayList<>();
+        private final Map<UUID, Integer> rowOf = new HashMap<>();
+
+        void add(InventoryItem item, String sku, int units) {
+            Integer row = rowOf.get(item.getId());
+            if (row == null) {
+                row = rows.size();
+                rowOf.put(item.getId(), row);
+                rows.add(new Line(item.getName(), sku));
+                fireTableRowsInserted(row, row);
+            }
+            rows.get(row).pending += units;
+            fireTableRowsUpdated(row, row);
+        }
+
+        /**
+         * Moves a committed batch out of pending; units of ids not in {@code saved} were dropped, not saved.
+         */
+        void committed(Map<UUID, Integer> batch, Set<UUID> saved) {
+            batch.forEach((id, units) -> {
+                int row = rowOf.get(id);
+                Line line = rows.get(row);
+                line.pending -= units;
+                if (saved.contains(id)) {
+                    line.saved += units;
+                }
+                fireTableRowsUpdated(row, row);
+            });
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column >= 2 ? Integer.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Line line = rows.get(row);
+            switch (column) {
+                case 0:
+                    return line.name;
+                case 1:
+                    return line.sku;
+                case 2:
+                    return line.pending;
+                default:
+                    return line.saved;
+            }
+        }
+    }
+
+    private static final class Line {
+        private final String name;
+        private final String sku;
+        private int pending;
+        private int saved;
+
+        private Line(String name, String sku) {
+            this.name = name;
+            this.sku = sku;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.codex.inventory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * Filter-and-aggregate pass over a list of items, split into runs that the common fork-join pool works
+ * through in parallel once the list is large. Each run keeps its matches in list order along with their
+ * count and value, and runs are joined left to right, so results keep the input's order (name
+ * order for a snapshot) and the status-bar totals come out of the same pass.
+ */
+final class InventoryScan {
+    /**
+     * Below this many items a single pass on the calling thread beats the fork/join overhead.
+     */
+    static final int PARALLEL_THRESHOLD = 50_000;
+    /** Items per run; a multiple of the snapshot chunk size so runs walk whole chunks. */
+    private static final int RUN_ITEMS = 32 * InventorySnapshot.CHUNK_SIZE;
+
+    private InventoryScan() {
+    }
+
+    static boolean isParallel(List<InventoryItem> items) {
+        return items.size() >= PARALLEL_THRESHOLD;
+    }
+
+    /**
+     * Items of {@code items} that pass {@code filter}, in list order, with their totals.
+     */
+    static Result filter(List<InventoryItem> items, Predicate<InventoryItem> filter) {
+        Run run = new Run(items, filter, 0, items.size(), isParallel(items) ? RUN_ITEMS : Integer.MAX_VALUE);
+        return run.invoke().result();
+    }
+
+    /**
+     * Sorts {@code items} in place, in parallel when large.
+     */
+    static void sort(List<InventoryItem> items, Comparator<InventoryItem> order) {
+        if (!isParallel(items)) {
+            items.sort(order);
+            return;
+        }
+        InventoryItem[] sorted = items.toArray(new InventoryItem[0]);
+        Arrays.parallelSort(sorted, order);
+        for (int i = 0; i < sorted.length; i++) {
+            items.set(i, sorted[i]);
+        }
+    }
+
+    /**
+     * Matches of a scan and their totals.
+     */
+    static final class Result {
+        private final List<InventoryItem> items;
+        private final double value;
+
+        private Result(List<InventoryItem> items, double value) {
+            this.items = items;
+            this.value = value;
+        }
+
+        List<InventoryItem> items() {
+            return items;
+        }
+
+        /**
+         * Sum of price × quantity over the matches.
+         */
+        double value() {
+            return value;
+        }
+    }
+
+    /**
+     * Matches of one range, kept as the per-run lists so joining is O(runs) rather than a copy per level.
+     */
+    private static final class Partial {
+        private final List<List<InventoryItem>> runs = new ArrayList<>();
+        private int count;
+        private double value;
+
+        Partial join(Partial right) {
+            runs.addAll(right.runs);
+            count += right.count;
+            value += right.value;
+            return this;
+        }
+
+        Result result() {
+            if (runs.size() == 1) {
+                return new Result(runs.get(0), value);
+            }
+            List<InventoryItem> items = new ArrayList<>(count);
+            for (List<InventoryItem> run : runs) {
+                items.addAll(run);
+            }
+            return new Result(items, value);
+        }
+    }
+
+    private static final class Run extends RecursiveTask<Partial> {
+        private final List<InventoryItem> items;
+        private final Predicate<InventoryItem> filter;
+        private final int from;
+        private final int to;
+        private final int runItems;
+
+        Run(List<InventoryItem> items, Predicate<InventoryItem> filter, int from, int to, int runItems) {
+            this.items = items;
+            this.filter = filter;
+            this.from = from;
+            this.to = to;
+            this.runItems = runItems;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from > runItems) {
+                int middle = from + (to - from) / 2 / runItems * runItems;
+                Run left = new Run(items, filter, from, Math.max(middle, from + runItems), runItems);
+                Run right = new Run(items, filter, left.to, to, runItems);
+                right.fork();
+                Partial joined = left.compute();
+                return joined.join(right.join());
+            }
+            Partial partial = new Partial();
+            List<InventoryItem> matches = new ArrayList<>();
+            if (items instanceof InventorySnapshot) {
+                ((InventorySnapshot) items).forEach(from, to, item -> accept(partial, matches, item));
+            } else {
+                for (int i = from; i < to; i++) {
+                    accept(partial, matches, items.get(i));
+                }
+            }
+            partial.runs.add(matches);
+            partial.count = matches.size();
+            return partial;
+        }
+
+        private void accept(Partial partial, List<InventoryItem> matches, InventoryItem item) {
+            if (filter.test(item)) {
+                matches.add(item);
+                partial.value += item.getPrice() * item.getQuantity();
+            }
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.codex.inventory;
+
+import java.lang.ref.Reference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Immutable, versioned view of the inventory list.
+ * <p>
+ * Items live in fixed-capacity chunks. Deriving a new version copies the chunk table and only the chunk
+ * that changed, so successive versions share everything else and a reader can iterate an old version
+ * for as long as it likes while writers keep publishing new ones.
+ * <p>
+ * A snapshot backed by an {@link OffHeapItemStore} holds record slots instead of items and builds each
+ * item on access; deriving a version writes changed items to the store and retires the slots they replace.
+ */
+public final class InventorySnapshot extends AbstractList<InventoryItem> implements RandomAccess {
+    static final int CHUNK_SIZE = 256;
+    private static final Object[] NO_CHUNKS = new Object[0];
+    private static final InventorySnapshot EMPTY = new InventorySnapshot(0, NO_CHUNKS, null);
+
+    private final long version;
+    private final Object[] chunks;
+    private final int[] offsets;
+    private final OffHeapItemStore store;
+
+    private InventorySnapshot(long version, Object[] chunks, OffHeapItemStore store) {
+        this.version = version;
+        this.chunks = chunks;
+        this.store = store;
+        this.offsets = new int[chunks.length + 1];
+        for (int i = 0; i < chunks.length; i++) {
+            offsets[i + 1] = offsets[i] + length(chunks[i]);
+        }
+        if (store != null) {
+            store.register(this, version);
+        }
+    }
+
+    public static InventorySnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * An empty version whose items, once added, are kept in {@code store}.
+     */
+    public static InventorySnapshot empty(OffHeapItemStore store) {
+        return new InventorySnapshot(0, NO_CHUNKS, store);
+    }
+
+    public static InventorySnapshot of(long version, List<InventoryItem> items) {
+        return EMPTY.withAppended(version, items);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public InventoryItem get(int index) {
+        int chunk = chunkOf(index);
+        return item(chunks[chunk], index - offsets[chunk]);
+    }
+
+    @Override
+    public int size() {
+        return offsets[chunks.length];
+    }
+
+    /**
+     * Returns the position of the item with {@code id}, or -1.
+     */
+    public int indexOf(UUID id) {
+        long most = id.getMostSignificantBits();
+        long least = id.getLeastSignificantBits();
+        for (int c = 0; c < chunks.length; c++) {
+            Object chunk = chunks[c];
+            for (int i = 0, length = length(chunk); i < length; i++) {
+                if (hasId(chunk, i, most, least)) {
+                    return offsets[c] + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Passes the items at positions {@code from} to {@code to} (exclusive) to {@code action} in order,
+     * walking the chunks directly rather than locating each position.
+     */
+    void forEach(int from, int to, Consumer<? super InventoryItem> action) {
+        if (from >= to) {
+            return;
+        }
+        int c = chunkOf(from);
+        int i = from - offsets[c];
+        for (int position = from; position < to; c++, i = 0) {
+            Object chunk = chunks[c];
+            for (int length = Math.min(length(chunk), i + to - position); i < length; i++, position++) {
+                action.accept(item(chunk, i));
+            }
+        }
+    }
+
+    /**
+     * Returns the position of {@code item} (matched by id) in a snapshot sorted by {@code order}, or -1.
+     * Runs in O(log n) plus the number of items that compare equal.
+     */
+    int indexOf(InventoryItem item, Comparator<? super InventoryItem> order) {
+        for (int i = lowerBound(item, order); i < size(); i++) {
+            InventoryItem candidate = get(i);
+            if (order.compare(candidate, item) != 0) {
+                break;
+            }
+            if (candidate.getIdMostSigBits() == item.getIdMostSigBits()
+                    && candidate.getIdLeastSigBits() == item.getIdLeastSigBits()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Applies many changes with one copy of the chunk table, rebuilding only the chunks they touch.
+     * {@code positions} (ascending) index into this snapshot and are paired with {@code replacements};
+     * a {@code null} replacement removes the item. {@code inserts} must be sorted by {@code order}; each
+     * lands after the items it compares equal to.
+     */
+    InventorySnapshot withBatch(
+            long newVersion,
+            int[] positions,
+            InventoryItem[] replacements,
+            List<InventoryItem> inserts,
+            Comparator<? super InventoryItem> order
+    ) {
+        if (chunks.length == 0) {
+            return withAppended(newVersion, inserts);
+        }
+        int[] insertAt = new int[inserts.size()];
+        for (int i = 0; i < insertAt.length; i++) {
+            insertAt[i] = upperBound(inserts.get(i), order);
+        }
+        List<Object> rebuilt = new ArrayList<>(chunks.length + inserts.size() / CHUNK_SIZE + 1);
+        int r = 0;
+        int n = 0;
+        for (int c = 0; c < chunks.length; c++) {
+            int start = offsets[c];
+            int end = offsets[c + 1];
+            boolean last = c == chunks.length - 1;
+            int nEnd = n;
+            while (nEnd < insertAt.length && (insertAt[nEnd] < end || last)) {
+                nEnd++;
+            }
+            int rEnd = r;
+            int removed = 0;
+            while (rEnd < positions.length && positions[rEnd] < end) {
+                if (replacements[rEnd] == null) {
+                    removed++;
+                }
+                rEnd++;
+            }
+            if (nEnd == n && rEnd == r) {
+                rebuilt.add(chunks[c]);
+                continue;
+            }
+            Object chunk = chunks[c];
+            Object merged = newChunk(end - start - removed + nEnd - n);
+            int m = 0;
+            for (int i = start; i < end; i++) {
+                while (n < nEnd && insertAt[n] == i) {
+                    put(merged, m++, inserts.get(n++), newVersion);
+                }
+                if (r < rEnd && positions[r] == i) {
+                    InventoryItem replacement = replacements[r++];
+                    if (replacement != null) {
+                        put(merged, m++, replacement, newVersion);
+                    }
+                    retire(chunk, i - start, newVersion);
+                } else {
+                    System.arraycopy(chunk, i - start, merged, m++, 1);
+                }
+            }
+            while (n < nEnd) {
+                put(merged, m++, inserts.get(n++), newVersion);
+            }
+            r = rEnd;
+            int pieces = (m + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            for (int p = 0; p < pieces; p++) {
+                int from = (int) ((long) m * p / pieces);
+                int to = (int) ((long) m * (p + 1) / pieces);
+                rebuilt.add(copyRange(merged, from, to));
+            }
+        }
+        return new InventorySnapshot(newVersion, rebuilt.toArray(), store);
+    }
+
+    /**
+     * Returns this version's items in {@code order}, sharing the chunks when they are already sorted, as
+     * they are in any file the manager wrote.
+     */
+    InventorySnapshot sorted(long newVersion, Comparator<? super InventoryItem> order) {
+        InventoryItem previous = null;
+        boolean ordered = true;
+        for (int i = 0; i < size() && ordered; i++) {
+            InventoryItem item = get(i);
+            ordered = previous == null || order.compare(previous, item) <= 0;
+            previous = item;
+        }
+        if (ordered) {
+            return new InventorySnapshot(newVersion, chunks, store);
+        }
+        if (store == null) {
+            List<InventoryItem> items = new ArrayList<>(this);
+            items.sort(order);
+            return of(newVersion, items);
+        }
+        int[] slots = new int[size()];
+        for (int c = 0; c < chunks.length; c++) {
+            System.arraycopy(chunks[c], 0, slots, offsets[c], length(chunks[c]));
+        }
+        mergeSort(slots, (a, b) -> order.compare(store.get(a), store.get(b)));
+        Object[] next = new Object[(slots.length + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        for (int c = 0; c < next.length; c++) {
+            next[c] = Arrays.copyOfRange(slots, c * CHUNK_SIZE, Math.min(slots.length, (c + 1) * CHUNK_SIZE));
+        }
+        return new InventorySnapshot(newVersion, next, store);
+    }
+
+    private int lowerBound(InventoryItem item, Comparator<? super InventoryItem> order) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (order.compare(get(mid), item) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    int upperBound(InventoryItem item, Comparator<? super InventoryItem> order) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (order.compare(get(mid), item) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    InventorySnapshot withAppended(long newVersion, List<InventoryItem> added) {
+        if (added.isEmpty()) {
+            return new InventorySnapshot(newVersion, chunks, store);
+        }
+        int keep = chunks.length;
+        int pending = added.size();
+        Object tail = null;
+        if (keep > 0 && length(chunks[keep - 1]) < CHUNK_SIZE) {
+            tail = chunks[--keep];
+        }
+        int tailLength = tail == null ? 0 : length(tail);
+        int newChunks = (tailLength + pending + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        Object[] next = Arrays.copyOf(chunks, keep + newChunks);
+        int source = 0;
+        for (int c = 0; c < newChunks; c++) {
+            int prefix = c == 0 ? tailLength : 0;
+            int length = Math.min(CHUNK_SIZE, prefix + pending - source);
+            Object chunk = newChunk(length);
+            if (prefix > 0) {
+                System.arraycopy(tail, 0, chunk, 0, prefix);
+            }
+            for (int i = prefix; i < length; i++) {
+                put(chunk, i, added.get(source++), newVersion);
+            }
+            next[keep + c] = chunk;
+        }
+        return new InventorySnapshot(newVersion, next, store);
+    }
+
+    InventorySnapshot withInserted(long newVersion, int index, InventoryItem item) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        if (chunks.length == 0) {
+            Object chunk = newChunk(1);
+            put(chunk, 0, item, newVersion);
+            return new InventorySnapshot(newVersion, new Object[]{chunk}, store);
+        }
+        int c = index == size() ? chunks.length - 1 : chunkOf(index);
+        Object chunk = chunks[c];
+        int length = length(chunk);
+        int at = index - offsets[c];
+        Object grown = newChunk(length + 1);
+        System.arraycopy(chunk, 0, grown, 0, at);
+        put(grown, at, item, newVersion);
+        System.arraycopy(chunk, at, grown, at + 1, length - at);
+        if (length + 1 <= CHUNK_SIZE) {
+            Object[] next = chunks.clone();
+            next[c] = grown;
+            return new InventorySnapshot(newVersion, next, store);
+        }
+        int half = (length + 1) / 2;
+        Object[] next = new Object[chunks.length + 1];
+        System.arraycopy(chunks, 0, next, 0, c);
+        next[c] = copyRange(grown, 0, half);
+        next[c + 1] = copyRange(grown, half, length + 1);
+        System.arraycopy(chunks, c + 1, next, c + 2, chunks.length - c - 1);
+        return new InventorySnapshot(newVersion, next, store);
+    }
+
+    InventorySnapshot withReplaced(long newVersion, int index, InventoryItem item) {
+        int c = chunkOf(index);
+        int at = index - offsets[c];
+        Object chunk = copyRange(chunks[c], 0, length(chunks[c]));
+        put(chunk, at, item, newVersion);
+        retire(chunks[c], at, newVersion);
+        Object[] next = chunks.clone();
+        next[c] = chunk;
+        return new InventorySnapshot(newVersion, next, store);
+    }
+
+    InventorySnapshot withRemoved(long newVersion, int index) {
+        int c = chunkOf(index);
+        Object chunk = chunks[c];
+        int length = length(chunk);
+        int at = index - offsets[c];
+        retire(chunk, at, newVersion);
+        if (length == 1) {
+            Object[] next = new Object[chunks.length - 1];
+            System.arraycopy(chunks, 0, next, 0, c);
+            System.arraycopy(chunks, c + 1, next, c, chunks.length - c - 1);
+            return new InventorySnapshot(newVersion, next, store);
+        }
+        Object shrunk = newChunk(length - 1);
+        System.arraycopy(chunk, 0, shrunk, 0, at);
+        System.arraycopy(chunk, at + 1, shrunk, at, length - at - 1);
+        Object[] next = chunks.clone();
+        next[c] = shrunk;
+        return new InventorySnapshot(newVersion, next, store);
+    }
+
+    private int chunkOf(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        int low = 0;
+        int high = chunks.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    // Chunks are InventoryItem[] on the heap or int[] store slots; these helpers hide the difference.
+
+    private Object newChunk(int length) {
+        return store == null ? new InventoryItem[length] : new int[length];
+    }
+
+    private int length(Object chunk) {
+        return store == null ? ((InventoryItem[]) chunk).length : ((int[]) chunk).length;
+    }
+
+    private InventoryItem item(Object chunk, int i) {
+        if (store == null) {
+            return ((InventoryItem[]) chunk)[i];
+        }
+        try {
+            return store.get(((int[]) chunk)[i]);
+        } finally {
+            // The slot may only be recycled once this snapshot is unreachable.
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    private boolean hasId(Object chunk, int i, long most, long least) {
+        if (store == null) {
+            InventoryItem item = ((InventoryItem[]) chunk)[i];
+            return item.getIdMostSigBits() == most && item.getIdLeastSigBits() == least;
+        }
+        try {
+            return store.hasId(((int[]) chunk)[i], most, least);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    private void put(Object chunk, int i, InventoryItem item, long newVersion) {
+        if (store == null) {
+            ((InventoryItem[]) chunk)[i] = item;
+        } else {
+            ((int[]) chunk)[i] = store.append(item, newVersion);
+        }
+    }
+
+    private void retire(Object chunk, int i, long newVersion) {
+        if (store != null) {
+            store.retire(((int[]) chunk)[i], newVersion);
+        }
+    }
+
+    private Object copyRange(Object chunk, int from, int to) {
+        Object copy = newChunk(to - from);
+        System.arraycopy(chunk, from, copy, 0, to - from);
+        return copy;
+    }
+
+    private interface SlotOrder {
+        int compare(int a, int b);
+    }
+
+    /**
+     * Stable bottom-up merge sort of store slots.
+     */
+    private static void mergeSort(int[] slots, SlotOrder order) {
+        int[] source = slots;
+        int[] target = new int[slots.length];
+        for (int width = 1; width < slots.length; width *= 2) {
+            for (int low = 0; low < slots.length; low += 2 * width) {
+                int mid = Math.min(low + width, slots.length);
+                int high = Math.min(low + 2 * width, slots.length);
+                int i = low;
+                int j = mid;
+                for (int k = low; k < high; k++) {
+                    target[k] = i < mid && (j >= high || order.compare(source[i], source[j]) <= 0) ? source[i++] : source[j++];
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != slots) {
+            System.arraycopy(source, 0, slots, 0, slots.length);
+        }
+    }
+}
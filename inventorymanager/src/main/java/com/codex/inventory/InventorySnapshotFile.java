@@ -0,0 +1,452 @@
+package com.codex.inventory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary snapshot of the inventory, intended for backups and transfers.
+ * <p>
+ * Layout: a header with the category and unit dictionaries, then independent blocks of up to
+ * {@link #BLOCK_SIZE} items, then a block index and a fixed-size trailer pointing at it. Inside a block,
+ * categories and units are dictionary indexes, prices are cents, and expiration days and update
+ * timestamps are zig-zag varint deltas from the previous item. Blocks are optionally deflated and can be
+ * read individually through {@link #readBlock(int)}.
+ */
+public final class InventorySnapshotFile {
+    public static final int BLOCK_SIZE = 4_096;
+    private static final int MAGIC = 0x494E5653;
+    /** Version 2 added the SKU after each name; version 1 files are still read. */
+    private static final int FORMAT_VERSION = 2;
+    private static final int FLAG_DEFLATE = 1;
+    private static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int INDEX_ENTRY_BYTES = Long.BYTES + Integer.BYTES * 3;
+
+    private final Path path;
+
+    public InventorySnapshotFile(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns whether {@code file} starts with the snapshot magic number.
+     */
+    public static boolean isSnapshot(Path file) throws IOException {
+        if (Files.notExists(file) || Files.size(file) < Integer.BYTES) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return isSnapshot(channel);
+        }
+    }
+
+    /**
+     * Returns whether the file open as {@code channel} starts with the snapshot magic number, reading it
+     * through that channel so a lock the caller holds on it is kept.
+     */
+    static boolean isSnapshot(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+        while (magic.hasRemaining()) {
+            if (channel.read(magic, magic.position()) < 0) {
+                return false;
+            }
+        }
+        return magic.flip().getInt() == MAGIC;
+    }
+
+    public void write(List<InventoryItem> items, boolean compress) throws IOException {
+        Map<String, Integer> categories = new HashMap<>();
+        Map<String, Integer> units = new HashMap<>();
+        List<String> categoryTable = new ArrayList<>();
+        List<String> unitTable = new ArrayList<>();
+        for (InventoryItem item : items) {
+            if (categories.putIfAbsent(item.getCategory(), categories.size()) == null) {
+                categoryTable.add(item.getCategory());
+            }
+            if (units.putIfAbsent(item.getUnit(), units.size()) == null) {
+                unitTable.add(item.getUnit());
+            }
+        }
+
+        int blockCount = (items.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        List<byte[]> blocks = IntStream.range(0, blockCount)
+                .parallel()
+                .mapToObj(block -> encodeBlock(items.subList(block * BLOCK_SIZE, Math.min(items.size(), (block + 1) * BLOCK_SIZE)), categories, units))
+                .collect(Collectors.toList());
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (OutputStream out = Files.newOutputStream(path)) {
+            Buffer header = new Buffer(256);
+            header.putInt(MAGIC);
+            header.putInt(FORMAT_VERSION);
+            header.putInt(compress ? FLAG_DEFLATE : 0);
+            header.putInt(items.size());
+            header.putStrings(categoryTable);
+            header.putStrings(unitTable);
+            out.write(header.bytes, 0, header.length);
+
+            long offset = header.length;
+            Buffer index = new Buffer(blockCount * INDEX_ENTRY_BYTES + TRAILER_BYTES);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                for (int block = 0; block < blockCount; block++) {
+                    byte[] raw = blocks.get(block);
+                    byte[] stored = compress ? deflate(deflater, raw) : raw;
+                    out.write(stored);
+                    index.putLong(offset);
+                    index.putInt(stored.length);
+                    index.putInt(raw.length);
+                    index.putInt(Math.min(BLOCK_SIZE, items.size() - block * BLOCK_SIZE));
+                    offset += stored.length;
+                }
+            } finally {
+                deflater.end();
+            }
+            index.putLong(offset);
+            index.putInt(blockCount);
+            index.putInt(MAGIC);
+            out.write(index.bytes, 0, index.length);
+        }
+    }
+
+    public List<InventoryItem> read() throws IOException {
+        try (Reader reader = new Reader(FileChannel.open(path, StandardOpenOption.READ), true)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * Reads the snapshot through {@code channel}, which is left open, so a lock the caller holds on the file
+     * is kept: on POSIX systems closing any other descriptor for it would release the lock.
+     */
+    List<InventoryItem> read(FileChannel channel) throws IOException {
+        try (Reader reader = new Reader(channel, false)) {
+            return read(reader);
+        }
+    }
+
+    private static List<InventoryItem> read(Reader reader) {
+        List<List<InventoryItem>> blocks = IntStream.range(0, reader.blockCount)
+                .parallel()
+                .mapToObj(reader::block)
+                .collect(Collectors.toList());
+        List<InventoryItem> items = new ArrayList<>(reader.itemCount);
+        blocks.forEach(items::addAll);
+        return items;
+    }
+
+    /**
+     * Streams the snapshot one block at a time.
+     *
+     * @return the number of items delivered
+     */
+    public int read(Consumer<List<InventoryItem>> sink) throws IOException {
+        try (Reader reader = new Reader(FileChannel.open(path, StandardOpenOption.READ), true)) {
+            int delivered = 0;
+            for (int block = 0; block < reader.blockCount; block++) {
+                List<InventoryItem> items = reader.block(block);
+                delivered += items.size();
+                sink.accept(items);
+            }
+            return delivered;
+        }
+    }
+
+    public int blockCount() throws IOException {
+        try (Reader reader = new Reader(FileChannel.open(path, StandardOpenOption.READ), true)) {
+            return reader.blockCount;
+        }
+    }
+
+    /**
+     * Decodes a single block without touching the others.
+     */
+    public List<InventoryItem> readBlock(int blockIndex) throws IOException {
+        try (Reader reader = new Reader(FileChannel.open(path, StandardOpenOption.READ), true)) {
+            if (blockIndex < 0 || blockIndex >= reader.blockCount) {
+                throw new IndexOutOfBoundsException("Block " + blockIndex + " of " + reader.blockCount);
+            }
+            return reader.block(blockIndex);
+        }
+    }
+
+    private static byte[] encodeBlock(List<InventoryItem> items, Map<String, Integer> categories, Map<String, Integer> units) {
+        Buffer out = new Buffer(items.size() * 40);
+        int previousExpiration = 0;
+        long previousUpdated = 0;
+        for (InventoryItem item : items) {
+            out.putLong(item.getIdMostSigBits());
+            out.putLong(item.getIdLeastSigBits());
+            out.putString(item.getName());
+            out.putString(item.getSku());
+            out.putVarint(categories.get(item.getCategory()));
+            out.putVarint(units.get(item.getUnit()));
+            out.putVarint(item.getQuantity());
+            out.putVarlong(Math.round(item.getPrice() * 100));
+            int expiration = item.getExpirationEpochDay();
+            if (expiration == InventoryItem.NO_EXPIRATION) {
+                out.putVarlong(0);
+            } else {
+                out.putVarlong(zigzag(expiration - (long) previousExpiration) + 1);
+                previousExpiration = expiration;
+            }
+            out.putVarlong(zigzag(item.getUpdatedAtMicros() - previousUpdated));
+            previousUpdated = item.getUpdatedAtMicros();
+        }
+        return Arrays.copyOf(out.bytes, out.length);
+    }
+
+    private static List<InventoryItem> decodeBlock(ByteBuffer in, int count, String[] categories, String[] units, boolean hasSku) {
+        List<InventoryItem> items = new ArrayList<>(count);
+        int previousExpiration = 0;
+        long previousUpdated = 0;
+        for (int i = 0; i < count; i++) {
+            long most = in.getLong();
+            long least = in.getLong();
+            String name = getString(in);
+            String sku = hasSku ? getString(in) : "";
+            String category = categories[(int) getVarlong(in)];
+            String unit = units[(int) getVarlong(in)];
+            int quantity = (int) getVarlong(in);
+            double price = getVarlong(in) / 100.0;
+            long expirationCode = getVarlong(in);
+            int expiration = InventoryItem.NO_EXPIRATION;
+            if (expirationCode != 0) {
+                expiration = (int) (previousExpiration + unzigzag(expirationCode - 1));
+                previousExpiration = expiration;
+            }
+            previousUpdated += unzigzag(getVarlong(in));
+            items.add(new InventoryItem(most, least, name, category, quantity, unit, price, expiration, previousUpdated, sku));
+        }
+        return items;
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] out = new byte[Math.max(64, raw.length / 2)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        return Arrays.copyOf(out, length);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long getVarlong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = (int) getVarlong(in);
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Open snapshot with its dictionaries and block index loaded; blocks are decoded on demand.
+     */
+    private final class Reader implements AutoCloseable {
+        private final FileChannel channel;
+        private final boolean ownsChannel;
+        private final String[] categories;
+        private final String[] units;
+        private final boolean deflated;
+        private final int formatVersion;
+        private final int itemCount;
+        private final int blockCount;
+        private final ByteBuffer index;
+
+        Reader(FileChannel channel, boolean ownsChannel) throws IOException {
+            this.channel = channel;
+            this.ownsChannel = ownsChannel;
+            try {
+                long size = channel.size();
+                ByteBuffer trailer = readFully(size - TRAILER_BYTES, TRAILER_BYTES);
+                long indexOffset = trailer.getLong();
+                blockCount = trailer.getInt();
+                if (trailer.getInt() != MAGIC) {
+                    throw new IOException("Not an inventory snapshot: " + path);
+                }
+                index = readFully(indexOffset, blockCount * INDEX_ENTRY_BYTES);
+                long dataStart = blockCount == 0 ? indexOffset : index.getLong(0);
+                ByteBuffer header = readFully(0, (int) dataStart);
+                if (header.getInt() != MAGIC) {
+                    throw new IOException("Unsupported inventory snapshot: " + path);
+                }
+                formatVersion = header.getInt();
+                if (formatVersion < 1 || formatVersion > FORMAT_VERSION) {
+                    throw new IOException("Unsupported inventory snapshot: " + path);
+                }
+                deflated = (header.getInt() & FLAG_DEFLATE) != 0;
+                itemCount = header.getInt();
+                categories = readStrings(header, InventoryDictionary.CATEGORIES);
+                units = readStrings(header, InventoryDictionary.UNITS);
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        List<InventoryItem> block(int block) {
+            int entry = block * INDEX_ENTRY_BYTES;
+            long offset = index.getLong(entry);
+            int storedLength = index.getInt(entry + Long.BYTES);
+            int rawLength = index.getInt(entry + Long.BYTES + Integer.BYTES);
+            int count = index.getInt(entry + Long.BYTES + Integer.BYTES * 2);
+            try {
+                ByteBuffer stored = readFully(offset, storedLength);
+                ByteBuffer raw = deflated ? inflate(stored, rawLength) : stored;
+                return decodeBlock(raw, count, categories, units, formatVersion >= 2);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read snapshot block " + block, e);
+            }
+        }
+
+        private String[] readStrings(ByteBuffer header, InventoryDictionary dictionary) {
+            String[] values = new String[(int) getVarlong(header)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = dictionary.canonicalize(getString(header));
+            }
+            return values;
+        }
+
+        private ByteBuffer readFully(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.BIG_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Truncated inventory snapshot: " + path);
+                }
+            }
+            return buffer.flip();
+        }
+
+        private ByteBuffer inflate(ByteBuffer stored, int rawLength) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored.array(), 0, stored.limit());
+                byte[] raw = new byte[rawLength];
+                int length = 0;
+                while (length < rawLength && !inflater.finished()) {
+                    int inflated = inflater.inflate(raw, length, rawLength - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Truncated inventory snapshot block: " + path);
+                    }
+                    length += inflated;
+                }
+                if (length != rawLength) {
+                    throw new IOException("Inventory snapshot block inflated to " + length + " of " + rawLength + " bytes: " + path);
+                }
+                return ByteBuffer.wrap(raw);
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt inventory snapshot block", e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (ownsChannel) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Growable big-endian byte buffer with varint helpers.
+     */
+    private static final class Buffer {
+        private byte[] bytes;
+        private int length;
+
+        Buffer(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void putInt(int value) {
+            ensure(Integer.BYTES);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                bytes[length++] = (byte) (value >>> shift);
+            }
+        }
+
+        void putLong(long value) {
+            ensure(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[length++] = (byte) (value >>> shift);
+            }
+        }
+
+        void putVarint(int value) {
+            putVarlong(value & 0xFFFFFFFFL);
+        }
+
+        void putVarlong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void putString(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            putVarint(encoded.length);
+            ensure(encoded.length);
+            System.arraycopy(encoded, 0, bytes, length, encoded.length);
+            length += encoded.length;
+        }
+
+        void putStrings(List<String> values) {
+            putVarint(values.size());
+            for (String value : values) {
+                putString(value);
+            }
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
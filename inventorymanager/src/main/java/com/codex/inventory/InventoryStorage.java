@@ -1,72 +1,334 @@
 package com.codex.inventory;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Handles persistence of inventory data using a lightweight pipe-delimited format.
+ * <p>
+ * Reads take a shared and writes an exclusive advisory lock on the data file, so cooperating tools that
+ * lock it too never see or cause a half-written file. The storage remembers the file as of its last load
+ * or save (see {@link InventoryFileIndex}) and {@link #pollExternalChanges} reports only what other programs
+ * changed since.
  */
 public final class InventoryStorage {
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
     private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
     private final Path filePath;
+    private final InventoryMetrics metrics = InventoryMetrics.global();
+    private InventoryFileIndex known;
+    private FileTime knownModified;
+    private long syncedMicros;
 
     public InventoryStorage(Path filePath) {
         this.filePath = filePath;
     }
 
     public List<InventoryItem> load() {
+        List<InventoryItem> items = new ArrayList<>();
+        load(Integer.MAX_VALUE, items::addAll);
+        return items;
+    }
+
+    /**
+     * Streams the data file to {@code sink} in batches of at most {@code batchSize} items, so callers can
+     * show rows before the whole file has been read. Seeds and saves the starter items when the file is empty.
+     * A compressed snapshot (see {@link #saveSnapshot}) at the data path is also accepted and is delivered one
+     * snapshot block per batch.
+     *
+     * @return the number of items delivered
+     */
+    public int load(int batchSize, Consumer<List<InventoryItem>> sink) {
+        InventoryEvents.StorageEvent event = new InventoryEvents.StorageEvent();
+        event.begin();
+        long start = System.nanoTime();
         try {
             ensureFileExists();
-            List<String> lines = Files.readAllLines(filePath, StandardCharsets.UTF_8);
-            List<InventoryItem> items = new ArrayList<>();
-            for (String line : lines) {
-                if (line.isBlank() || line.startsWith("#")) {
-                    continue;
+            int loaded;
+            if (InventorySnapshotFile.isSnapshot(filePath)) {
+                loaded = new InventorySnapshotFile(filePath).read(sink);
+                try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                    remember(channel);
                 }
-                parseLine(line).ifPresent(items::add);
-            }
-            if (items.isEmpty()) {
-                items.addAll(defaultItems());
-                save(items);
+            } else {
+                loaded = loadText(batchSize, sink);
             }
-            return items;
+            record(event, "load", filePath, start, loaded, Files.size(filePath));
+            return loaded;
         } catch (IOException e) {
             throw new IllegalStateException("Unable to load inventory data", e);
         }
     }
 
+    /**
+     * Reads the text format under a shared lock, or an exclusive one when the file is empty and gets seeded.
+     * Everything goes through the locked channel: on POSIX systems closing any other descriptor for the
+     * file would drop the lock.
+     */
+    private int loadText(int batchSize, Consumer<List<InventoryItem>> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, channel.size() > 0);
+            try {
+                int loaded = 0;
+                List<InventoryItem> batch = new ArrayList<>(Math.min(batchSize, 1024));
+                Map<String, String> categoryTokens = new HashMap<>();
+                Map<String, String> unitTokens = new HashMap<>();
+                BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank() || line.startsWith("#")) {
+                        continue;
+                    }
+                    Optional<InventoryItem> parsed = parseLine(line, categoryTokens, unitTokens);
+                    if (parsed.isEmpty()) {
+                        continue;
+                    }
+                    batch.add(parsed.get());
+                    if (batch.size() >= batchSize) {
+                        loaded += batch.size();
+                        sink.accept(batch);
+                        batch = new ArrayList<>(Math.min(batchSize, 1024));
+                    }
+                }
+                if (loaded == 0 && batch.isEmpty()) {
+                    batch.addAll(defaultItems());
+                    write(channel, batch);
+                } else {
+                    remember(channel);
+                }
+                if (!batch.isEmpty()) {
+                    loaded += batch.size();
+                    sink.accept(batch);
+                }
+                return loaded;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
     public void save(List<InventoryItem> items) {
+        save(changes -> items);
+    }
+
+    /**
+     * Saves what {@code merge} returns once it has been given the other programs' changes since the last
+     * sync (null when there are none, as from {@link #pollExternalChanges}). The file is opened once and
+     * exclusively locked before it is checked, so nothing another program writes between the check and the
+     * write can be overwritten unseen.
+     */
+    public synchronized void save(Function<ExternalChanges, List<InventoryItem>> merge) {
+        InventoryEvents.StorageEvent event = new InventoryEvents.StorageEvent();
+        event.begin();
+        long start = System.nanoTime();
         try {
             ensureFileExists();
-            List<String> lines = new ArrayList<>();
-            lines.add("# inventory-data v1");
-            for (InventoryItem item : items) {
-                lines.add(formatItem(item));
+            int rows;
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    List<InventoryItem> items = merge.apply(poll(channel));
+                    write(channel, items);
+                    rows = items.size();
+                } finally {
+                    lock.release();
+                }
             }
-            Files.write(
-                    filePath,
-                    lines,
-                    StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.TRUNCATE_EXISTING,
-                    StandardOpenOption.WRITE
-            );
+            record(event, "save", filePath, start, rows, Files.size(filePath));
         } catch (IOException e) {
             throw new IllegalStateException("Unable to save inventory data", e);
         }
     }
 
+    /**
+     * Reports what other programs changed in the data file since it was last loaded, saved or polled, or
+     * null when nothing did. A cheap size and timestamp check comes first; after that only partitions whose
+     * bytes differ are parsed. Items in {@link ExternalChanges#getUpserts()} are as the file has them; the
+     * caller decides by their update time whether they win. Returns null before the first load.
+     */
+    synchronized ExternalChanges pollExternalChanges() {
+        if (known == null) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+            try {
+                return poll(channel);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read external changes to inventory data", e);
+        }
+    }
+
+    /**
+     * Changes since the last sync as read through {@code channel}, whose lock the caller holds, or null.
+     */
+    private ExternalChanges poll(FileChannel channel) throws IOException {
+        if (known == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        FileTime modified = Files.getLastModifiedTime(filePath);
+        if (channel.size() == known.length() && modified.equals(knownModified)) {
+            return null;
+        }
+        long previousSync = syncedMicros;
+        if (InventorySnapshotFile.isSnapshot(channel)) {
+            // A snapshot dropped over the data file has no line partitions; take it whole.
+            List<InventoryItem> items = new InventorySnapshotFile(filePath).read(channel);
+            remember(channel);
+            return new ExternalChanges(items, List.of(), previousSync);
+        }
+        return diff(channel, modified, previousSync, start);
+    }
+
+    private ExternalChanges diff(FileChannel channel, FileTime modified, long previousSync, long start) throws IOException {
+        InventoryFileIndex previous = known;
+        InventoryFileIndex current = InventoryFileIndex.scan(channel);
+        List<InventoryFileIndex.Partition> changed = current.changedSince(previous);
+        List<InventoryItem> upserts = new ArrayList<>();
+        Map<String, String> categoryTokens = new HashMap<>();
+        Map<String, String> unitTokens = new HashMap<>();
+        long parsedBytes = 0;
+        for (InventoryFileIndex.Partition partition : changed) {
+            ByteBuffer bytes = ByteBuffer.allocate((int) partition.length());
+            while (bytes.hasRemaining() && channel.read(bytes, partition.offset() + bytes.position()) > 0) {
+                // Keep reading until the partition is in memory.
+            }
+            parsedBytes += partition.length();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new ByteArrayInputStream(bytes.array(), 0, bytes.position()), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank() && !line.startsWith("#")) {
+                        parseLine(line, categoryTokens, unitTokens).ifPresent(upserts::add);
+                    }
+                }
+            }
+        }
+        List<UUID> removed = current.removedSince(previous, changed);
+        known = current;
+        knownModified = modified;
+        syncedMicros = InventoryItem.toEpochMicros(LocalDateTime.now());
+        metrics.recordTime("storage.pollExternal", System.nanoTime() - start);
+        metrics.recordValue("storage.pollExternal.parsedBytes", parsedBytes);
+        metrics.recordValue("storage.pollExternal.partitions", changed.size());
+        return new ExternalChanges(upserts, removed, previousSync);
+    }
+
+    /**
+     * Writes the text format through {@code channel}, which holds the exclusive lock, and remembers the result.
+     */
+    private synchronized void write(FileChannel channel, List<InventoryItem> items) throws IOException {
+        channel.truncate(0);
+        InventoryFileIndex.Builder index = new InventoryFileIndex.Builder();
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+        byte[] separator = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+        long position = 0;
+        String header = "# inventory-data v1";
+        for (int i = -1; i < items.size(); i++) {
+            byte[] line = (i < 0 ? header : formatItem(items.get(i))).getBytes(StandardCharsets.UTF_8);
+            if (buffer.remaining() < line.length + separator.length) {
+                position += drain(channel, buffer, position);
+                if (buffer.remaining() < line.length + separator.length) {
+                    buffer = ByteBuffer.allocate(line.length + separator.length);
+                }
+            }
+            int lineStart = buffer.position();
+            buffer.put(line).put(separator);
+            index.line(buffer.array(), lineStart, buffer.position() - lineStart);
+        }
+        drain(channel, buffer, position);
+        known = index.build();
+        knownModified = Files.getLastModifiedTime(filePath);
+        syncedMicros = InventoryItem.toEpochMicros(LocalDateTime.now());
+    }
+
+    private static int drain(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    private synchronized void remember(FileChannel channel) throws IOException {
+        known = InventoryFileIndex.scan(channel);
+        knownModified = Files.getLastModifiedTime(filePath);
+        syncedMicros = InventoryItem.toEpochMicros(LocalDateTime.now());
+    }
+
+    /**
+     * Writes {@code items} as a dictionary- and delta-coded binary snapshot, optionally deflating each block.
+     * Several times smaller than the text format; intended for backups and transfers.
+     */
+    public void saveSnapshot(Path target, List<InventoryItem> items, boolean compress) {
+        InventoryEvents.StorageEvent event = new InventoryEvents.StorageEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            new InventorySnapshotFile(target).write(items, compress);
+            record(event, "saveSnapshot", target, start, items.size(), Files.size(target));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to save inventory snapshot", e);
+        }
+    }
+
+    public List<InventoryItem> loadSnapshot(Path source) {
+        InventoryEvents.StorageEvent event = new InventoryEvents.StorageEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            List<InventoryItem> items = new InventorySnapshotFile(source).read();
+            record(event, "loadSnapshot", source, start, items.size(), Files.size(source));
+            return items;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load inventory snapshot", e);
+        }
+    }
+
+    private void record(InventoryEvents.StorageEvent event, String operation, Path path, long start, int rows, long bytes) {
+        metrics.recordTime("storage." + operation, System.nanoTime() - start);
+        metrics.recordValue("storage." + operation + ".rows", rows);
+        metrics.recordValue("storage." + operation + ".bytes", bytes);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.path = path.toString();
+            event.rows = rows;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
     private void ensureFileExists() throws IOException {
         Files.createDirectories(filePath.getParent());
         if (Files.notExists(filePath)) {
@@ -84,27 +346,40 @@ public final class InventoryStorage {
                 encode(item.getUnit()),
                 String.format("%.2f", item.getPrice()),
                 expiration,
-                DATE_TIME_FORMAT.format(item.getUpdatedAt())
+                DATE_TIME_FORMAT.format(item.getUpdatedAt()),
+                encode(item.getSku())
         );
     }
 
-    private java.util.Optional<InventoryItem> parseLine(String line) {
+    /**
+     * Parses one record. The token maps cache encoded category/unit tokens to their canonical decoded
+     * value so repeated tokens are decoded once per load.
+     */
+    private Optional<InventoryItem> parseLine(
+            String line,
+            Map<String, String> categoryTokens,
+            Map<String, String> unitTokens
+    ) {
         String[] parts = line.split("\\|");
         if (parts.length < 8) {
-            return java.util.Optional.empty();
+            return Optional.empty();
         }
         try {
             UUID id = UUID.fromString(parts[0]);
             String name = decode(parts[1]);
-            String category = decode(parts[2]);
+            String category = categoryTokens.computeIfAbsent(parts[2],
+                    token -> InventoryDictionary.CATEGORIES.canonicalize(decode(token).strip()));
             int quantity = Integer.parseInt(parts[3]);
-            String unit = decode(parts[4]);
+            String unit = unitTokens.computeIfAbsent(parts[4],
+                    token -> InventoryDictionary.UNITS.canonicalize(decode(token).strip()));
             double price = Double.parseDouble(parts[5]);
             LocalDate expiration = "-".equals(parts[6]) || parts[6].isBlank()
                     ? null
                     : LocalDate.parse(parts[6], DATE_FORMAT);
             LocalDateTime updatedAt = LocalDateTime.parse(parts[7], DATE_TIME_FORMAT);
-            return java.util.Optional.of(new InventoryItem(
+            // Files written before SKUs existed have eight fields.
+            String sku = parts.length > 8 ? decode(parts[8]) : "";
+            return Optional.of(new InventoryItem(
                     id,
                     name,
                     category,
@@ -112,10 +387,11 @@ public final class InventoryStorage {
                     unit,
                     price,
                     expiration,
-                    updatedAt
+                    updatedAt,
+                    sku
             ));
         } catch (Exception ex) {
-            return java.util.Optional.empty();
+            return Optional.empty();
         }
     }
 
@@ -145,4 +421,41 @@ public final class InventoryStorage {
     public Path getFilePath() {
         return filePath;
     }
+
+    /**
+     * What another program changed in the data file; see {@link #pollExternalChanges}.
+     */
+    static final class ExternalChanges {
+        private final List<InventoryItem> upserts;
+        private final List<UUID> removed;
+        private final long previousSyncMicros;
+
+        private ExternalChanges(List<InventoryItem> upserts, List<UUID> removed, long previousSyncMicros) {
+            this.upserts = upserts;
+            this.removed = removed;
+            this.previousSyncMicros = previousSyncMicros;
+        }
+
+        /**
+         * Items from the changed parts of the file, whether or not they differ from memory.
+         */
+        List<InventoryItem> getUpserts() {
+            return upserts;
+        }
+
+        /**
+         * Ids that disappeared from the file.
+         */
+        List<UUID> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * When the storage last matched the file; items updated in memory after this are newer than any
+         * deletion found now.
+         */
+        long getPreviousSyncMicros() {
+            return previousSyncMicros;
+        }
+    }
 }
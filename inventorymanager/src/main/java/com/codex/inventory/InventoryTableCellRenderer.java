@@ -5,6 +5,7 @@ import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 import java.text.NumberFormat;
 import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.Locale;
 
 /**
@@ -13,6 +14,7 @@ import java.util.Locale;
 public final class InventoryTableCellRenderer extends DefaultTableCellRenderer {
     private final InventoryTableModel model;
     private int lowStockThreshold = 5;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMM d");
     private final NumberFormat currency = NumberFormat.getCurrencyInstance(Locale.US);
 
     public InventoryTableCellRenderer(InventoryTableModel model) {
@@ -40,6 +42,9 @@ public final class InventoryTableCellRenderer extends DefaultTableCellRenderer {
             component.setHorizontalAlignment(SwingConstants.RIGHT);
         } else if (column == 2 && value instanceof Number) {
             component.setHorizontalAlignment(SwingConstants.CENTER);
+        } else if (column == 7) {
+            component.setText(describe((ReorderForecaster.Forecast) value));
+            component.setHorizontalAlignment(SwingConstants.LEFT);
         } else {
             component.setHorizontalAlignment(SwingConstants.LEFT);
         }
@@ -56,7 +61,7 @@ public final class InventoryTableCellRenderer extends DefaultTableCellRenderer {
         boolean expired = item.getExpirationDate() != null && item.getExpirationDate().isBefore(today);
         boolean expiringSoon = item.getExpirationDate() != null && !expired
                 && !item.getExpirationDate().isAfter(today.plusDays(3));
-        boolean lowStock = item.getQuantity() <= lowStockThreshold;
+        boolean lowStock = item.getQuantity() <= lowStockThreshold || isReorderDue(model.getValueAt(modelRow, 7));
 
         if (expired) {
             component.setBackground(new Color(244, 204, 204));
@@ -69,4 +74,19 @@ public final class InventoryTableCellRenderer extends DefaultTableCellRenderer {
         }
         return component;
     }
+
+    private static boolean isReorderDue(Object forecast) {
+        return forecast != null && ((ReorderForecaster.Forecast) forecast).isReorderDue();
+    }
+
+    private static String describe(ReorderForecaster.Forecast forecast) {
+        if (forecast == null || forecast.getStockOutDate() == null) {
+            return "—";
+        }
+        if (forecast.getItem().getQuantity() == 0) {
+            return "Out of stock";
+        }
+        String text = String.format("%.0f d · %s", Math.floor(forecast.getDaysOfStock()), DATE_FORMAT.format(forecast.getStockOutDate()));
+        return forecast.isReorderDue() ? text + " · order " + forecast.getSuggestedOrder() : text;
+    }
 }
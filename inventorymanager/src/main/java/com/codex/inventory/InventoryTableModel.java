@@ -5,6 +5,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Table model backing the inventory JTable.
@@ -12,15 +13,128 @@ import java.util.List;
 public final class InventoryTableModel extends AbstractTableModel {
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMM d");
     private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("MMM d, h:mm a");
-    private final String[] columns = {"Name", "Category", "Quantity", "Unit", "Price", "Expires", "Updated"};
-    private final List<InventoryItem> rows = new ArrayList<>();
+    private final String[] columns = {"Name", "Category", "Quantity", "Unit", "Price", "Expires", "Updated", "Stock-out"};
+    /** A snapshot is held as is until the first patch, so its items are built only as rows are painted. */
+    private List<InventoryItem> rows = new ArrayList<>();
+    private double totalValue;
+    private ReorderForecaster forecaster;
+
+    /**
+     * Fills the stock-out column from {@code forecaster}; repaint after it recomputes.
+     */
+    public void setForecaster(ReorderForecaster forecaster) {
+        this.forecaster = forecaster;
+        if (!rows.isEmpty()) {
+            fireTableRowsUpdated(0, rows.size() - 1);
+        }
+    }
 
     public void setItems(List<InventoryItem> items) {
-        rows.clear();
-        rows.addAll(items);
+        setItems(items, items.stream().mapToDouble(InventoryTableModel::valueOf).sum());
+    }
+
+    /**
+     * Replaces the rows with {@code items}, whose value the caller already summed while finding them.
+     */
+    public void setItems(List<InventoryItem> items, double totalValue) {
+        rows = items instanceof InventorySnapshot ? items : new ArrayList<>(items);
+        this.totalValue = totalValue;
         fireTableDataChanged();
     }
 
+    public void addItems(List<InventoryItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        int first = rows.size();
+        editableRows().addAll(items);
+        for (InventoryItem item : items) {
+            totalValue += valueOf(item);
+        }
+        fireTableRowsInserted(first, rows.size() - 1);
+    }
+
+    /**
+     * Inserts {@code item} at its position in name order and returns the row index.
+     */
+    public int insertSorted(InventoryItem item) {
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(rows.get(mid).getName(), item.getName()) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        editableRows().add(low, item);
+        totalValue += valueOf(item);
+        fireTableRowsInserted(low, low);
+        return low;
+    }
+
+    public void replaceAt(int rowIndex, InventoryItem item) {
+        InventoryItem previous = editableRows().set(rowIndex, item);
+        totalValue += valueOf(item) - valueOf(previous);
+        fireTableRowsUpdated(rowIndex, rowIndex);
+    }
+
+    public void removeAt(int rowIndex) {
+        InventoryItem removed = editableRows().remove(rowIndex);
+        totalValue -= valueOf(removed);
+        fireTableRowsDeleted(rowIndex, rowIndex);
+    }
+
+    /**
+     * Returns the row holding the item with {@code id}, or -1.
+     */
+    public int indexOf(UUID id) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).hasId(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the row holding {@code item}'s id, or -1. Snapshot rows are in name order, so they are searched
+     * by {@code item}'s name without building every item.
+     */
+    public int indexOf(InventoryItem item) {
+        if (!isSnapshotView()) {
+            return indexOf(item.getId());
+        }
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(rows.get(mid).getName(), item.getName()) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int row = low; row < rows.size(); row++) {
+            InventoryItem candidate = rows.get(row);
+            if (candidate.hasId(item.getId())) {
+                return row;
+            }
+            if (!candidate.getName().equalsIgnoreCase(item.getName())) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether the rows are a snapshot rather than a copy; patching them copies every row first.
+     */
+    public boolean isSnapshotView() {
+        return rows instanceof InventorySnapshot;
+    }
+
     public InventoryItem getItemAt(int rowIndex) {
         if (rowIndex < 0 || rowIndex >= rows.size()) {
             return null;
@@ -33,7 +147,18 @@ public final class InventoryTableModel extends AbstractTableModel {
     }
 
     public double getTotalValue() {
-        return rows.stream().mapToDouble(item -> item.getPrice() * item.getQuantity()).sum();
+        return totalValue;
+    }
+
+    private List<InventoryItem> editableRows() {
+        if (isSnapshotView()) {
+            rows = new ArrayList<>(rows);
+        }
+        return rows;
+    }
+
+    private static double valueOf(InventoryItem item) {
+        return item.getPrice() * item.getQuantity();
     }
 
     @Override
@@ -69,6 +194,8 @@ public final class InventoryTableModel extends AbstractTableModel {
                 return item.getExpirationDate() == null ? "—" : DATE_FORMAT.format(item.getExpirationDate());
             case 6:
                 return DATE_TIME_FORMAT.format(item.getUpdatedAt());
+            case 7:
+                return forecaster == null ? null : forecaster.forecast(item);
             default:
                 return "";
         }
@@ -81,6 +208,8 @@ public final class InventoryTableModel extends AbstractTableModel {
                 return Integer.class;
             case 4:
                 return Double.class;
+            case 7:
+                return ReorderForecaster.Forecast.class;
             default:
                 return String.class;
         }
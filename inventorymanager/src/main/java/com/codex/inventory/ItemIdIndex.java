@@ -0,0 +1,111 @@
+package com.codex.inventory;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing hash index from item id to the current item, keyed on the raw id bits so lookups
+ * allocate nothing. Not thread-safe; {@link InventoryManager} guards it with its lock.
+ */
+final class ItemIdIndex {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys = new long[MIN_CAPACITY * 2];
+    private InventoryItem[] values = new InventoryItem[MIN_CAPACITY];
+    private int size;
+
+    InventoryItem get(UUID id) {
+        return get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    InventoryItem get(long most, long least) {
+        int mask = values.length - 1;
+        for (int slot = slot(most, least, mask); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot * 2] == most && keys[slot * 2 + 1] == least) {
+                return values[slot];
+            }
+        }
+        return null;
+    }
+
+    void put(InventoryItem item) {
+        if ((size + 1) * 2 > values.length) {
+            resize(values.length * 2);
+        }
+        long most = item.getIdMostSigBits();
+        long least = item.getIdLeastSigBits();
+        int mask = values.length - 1;
+        int slot = slot(most, least, mask);
+        while (values[slot] != null) {
+            if (keys[slot * 2] == most && keys[slot * 2 + 1] == least) {
+                values[slot] = item;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot * 2] = most;
+        keys[slot * 2 + 1] = least;
+        values[slot] = item;
+        size++;
+    }
+
+    void remove(InventoryItem item) {
+        long most = item.getIdMostSigBits();
+        long least = item.getIdLeastSigBits();
+        int mask = values.length - 1;
+        int slot = slot(most, least, mask);
+        while (values[slot] != null && (keys[slot * 2] != most || keys[slot * 2 + 1] != least)) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == null) {
+            return;
+        }
+        // Backward-shift deletion keeps probe chains intact without tombstones.
+        int hole = slot;
+        for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slot(keys[next * 2], keys[next * 2 + 1], mask);
+            boolean movable = hole <= next ? home <= hole || home > next : home <= hole && home > next;
+            if (movable) {
+                keys[hole * 2] = keys[next * 2];
+                keys[hole * 2 + 1] = keys[next * 2 + 1];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = null;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Consumer<InventoryItem> action) {
+        for (InventoryItem value : values) {
+            if (value != null) {
+                action.accept(value);
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        InventoryItem[] oldValues = values;
+        keys = new long[capacity * 2];
+        values = new InventoryItem[capacity];
+        size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldValues[i]);
+            }
+        }
+    }
+
+    private static int slot(long most, long least, int mask) {
+        long h = most ^ least;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
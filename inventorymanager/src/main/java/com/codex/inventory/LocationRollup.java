@@ -0,0 +1,56 @@
+package com.codex.inventory;
+
+/**
+ * Totals for one location, or for the whole chain, at the time they were read.
+ */
+public final class LocationRollup {
+    private final String location;
+    private final long units;
+    private final double value;
+    private final int itemCount;
+    private final int lowStockCount;
+
+    LocationRollup(String location, long units, double value, int itemCount, int lowStockCount) {
+        this.location = location;
+        this.units = units;
+        this.value = value;
+        this.itemCount = itemCount;
+        this.lowStockCount = lowStockCount;
+    }
+
+    /**
+     * Location name, or null for the chain-wide roll-up.
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    public boolean isChain() {
+        return location == null;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    /**
+     * Sum of price × quantity.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Items carried: stocked here at some point, or, for the chain, all items.
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Carried items at or below the low-stock threshold; for the chain, items whose total is.
+     */
+    public int getLowStockCount() {
+        return lowStockCount;
+    }
+}
@@ -0,0 +1,548 @@
+package com.codex.inventory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * Quantities of every item at every location, with per-location roll-ups.
+ * <p>
+ * Items get a dense ordinal and each location an {@code int[]} indexed by it, so 50 locations × 500k items
+ * take 100 MB and a roll-up is a pass over primitive arrays. An item's own quantity is the chain-wide total;
+ * changes to it that did not come from a location operation are reconciled against the default location,
+ * drawing from the others only once it runs dry. Each location is stored in its own file, so loading and
+ * saving one never touches another. Not thread-safe; {@link InventoryManager} uses it under its lock.
+ */
+final class LocationStock {
+    static final String DEFAULT_LOCATION = "Main";
+    private static final int MAGIC = 0x494C4F43;
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".stock";
+    private static final int RECORD_BYTES = 20;
+    private static final int IO_BUFFER_BYTES = 1 << 16;
+    /**
+     * Below this many ordinals a sequential scan beats the fork/join overhead of a parallel one.
+     */
+    private static final int PARALLEL_THRESHOLD = 50_000;
+
+    private final Path directory;
+    private final InventoryMetrics metrics = InventoryMetrics.global();
+    private final List<Location> locations = new ArrayList<>();
+    private long[] most = new long[1024];
+    private long[] least = new long[1024];
+    private double[] prices = new double[1024];
+    private int[] totals = new int[1024];
+    private final BitSet live = new BitSet();
+    /** Open-addressing id → ordinal + 1; 0 marks an empty slot. */
+    private int[] table = new int[2048];
+    private int[] free = new int[16];
+    private int freeCount;
+    private int size;
+    private int highWater;
+    private int lowStockThreshold = 5;
+    private int chainLowStock;
+
+    LocationStock(Path directory) {
+        this.directory = directory;
+        locations.add(new Location(DEFAULT_LOCATION, fileFor(DEFAULT_LOCATION), most.length));
+    }
+
+    /**
+     * Assigns ordinals to {@code items}, reads every location file in parallel and reconciles the files
+     * with the item totals. Called once the items are loaded.
+     */
+    void load(List<InventoryItem> items) {
+        long start = System.nanoTime();
+        int[] expected = new int[items.size()];
+        for (InventoryItem item : items) {
+            int ordinal = assign(item.getIdMostSigBits(), item.getIdLeastSigBits());
+            prices[ordinal] = item.getPrice();
+            expected[ordinal] = item.getQuantity();
+        }
+        try {
+            if (Files.isDirectory(directory)) {
+                List<Location> found = new ArrayList<>();
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+                    for (Path file : files) {
+                        found.add(new Location(null, file, most.length));
+                    }
+                }
+                found.parallelStream().forEach(this::read);
+                found.sort((a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.name, b.name));
+                for (Location location : found) {
+                    if (location.name.equals(DEFAULT_LOCATION)) {
+                        locations.set(0, location);
+                    } else {
+                        locations.add(location);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to load locations from " + directory, ex);
+        }
+        for (Location location : locations) {
+            for (int ordinal = location.carried.nextSetBit(0); ordinal >= 0; ordinal = location.carried.nextSetBit(ordinal + 1)) {
+                totals[ordinal] += location.quantities[ordinal];
+            }
+        }
+        for (int ordinal = 0; ordinal < expected.length; ordinal++) {
+            reconcile(ordinal, expected[ordinal]);
+        }
+        recompute();
+        metrics.recordTime("locations.load", System.nanoTime() - start);
+    }
+
+    /**
+     * Follows an item change made without naming a location. Called under the manager lock.
+     */
+    void track(InventoryItem previous, InventoryItem next) {
+        int ordinal = previous == null ? -1 : find(previous.getIdMostSigBits(), previous.getIdLeastSigBits());
+        if (next == null) {
+            if (ordinal >= 0) {
+                for (Location location : locations) {
+                    if (location.carried.get(ordinal)) {
+                        set(location, ordinal, 0);
+                        location.forget(ordinal, lowStockThreshold);
+                    }
+                }
+                if (totals[ordinal] <= lowStockThreshold) {
+                    chainLowStock--;
+                }
+                release(ordinal);
+            }
+            return;
+        }
+        if (ordinal < 0) {
+            ordinal = assign(next.getIdMostSigBits(), next.getIdLeastSigBits());
+            prices[ordinal] = next.getPrice();
+            chainLowStock++;
+        } else if (prices[ordinal] != next.getPrice()) {
+            double change = next.getPrice() - prices[ordinal];
+            for (Location location : locations) {
+                location.value += location.quantities[ordinal] * change;
+            }
+            prices[ordinal] = next.getPrice();
+        }
+        reconcile(ordinal, next.getQuantity());
+    }
+
+    List<String> names() {
+        List<String> names = new ArrayList<>(locations.size());
+        for (Location location : locations) {
+            names.add(location.name);
+        }
+        return names;
+    }
+
+    /**
+     * Index of the location called {@code name}, ignoring case, or -1.
+     */
+    int indexOf(String name) {
+        for (int i = 0; i < locations.size(); i++) {
+            if (locations.get(i).name.equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int add(String name) {
+        String trimmed = name.strip();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("Location name is blank");
+        }
+        if (indexOf(trimmed) >= 0) {
+            throw new IllegalArgumentException("Location already exists: " + trimmed);
+        }
+        // The default location comes first and the rest stay in name order, as they load.
+        int index = 1;
+        while (index < locations.size() && String.CASE_INSENSITIVE_ORDER.compare(locations.get(index).name, trimmed) < 0) {
+            index++;
+        }
+        locations.add(index, new Location(trimmed, fileFor(trimmed), most.length));
+        return index;
+    }
+
+    int quantity(int location, long idMost, long idLeast) {
+        int ordinal = find(idMost, idLeast);
+        return ordinal < 0 ? 0 : locations.get(location).quantities[ordinal];
+    }
+
+    /**
+     * Changes the item's quantity at {@code location}, never below zero, and returns the change applied.
+     * The caller publishes the item with its total changed by the same amount.
+     */
+    int adjust(int location, long idMost, long idLeast, int delta) {
+        int ordinal = find(idMost, idLeast);
+        int[] quantities = locations.get(location).quantities;
+        int applied = Math.max(0, quantities[ordinal] + delta) - quantities[ordinal];
+        set(locations.get(location), ordinal, quantities[ordinal] + applied);
+        return applied;
+    }
+
+    void transfer(int from, int to, long idMost, long idLeast, int units) {
+        int ordinal = find(idMost, idLeast);
+        int available = locations.get(from).quantities[ordinal];
+        if (units > available) {
+            throw new IllegalArgumentException("Only " + available + " units at " + locations.get(from).name);
+        }
+        set(locations.get(from), ordinal, available - units);
+        set(locations.get(to), ordinal, locations.get(to).quantities[ordinal] + units);
+    }
+
+    /**
+     * Ids of items carried at {@code location} with at most the low-stock threshold on hand, as pairs of
+     * most and least significant bits.
+     */
+    long[] lowStock(int location) {
+        Location target = locations.get(location);
+        IntStream ordinals = IntStream.range(0, highWater);
+        if (highWater >= PARALLEL_THRESHOLD) {
+            ordinals = ordinals.parallel();
+        }
+        int[] matches = ordinals.filter(o -> target.carried.get(o) && target.quantities[o] <= lowStockThreshold).toArray();
+        long[] ids = new long[matches.length * 2];
+        for (int i = 0; i < matches.length; i++) {
+            ids[2 * i] = most[matches[i]];
+            ids[2 * i + 1] = least[matches[i]];
+        }
+        return ids;
+    }
+
+    void setLowStockThreshold(int threshold) {
+        if (threshold != lowStockThreshold) {
+            lowStockThreshold = Math.max(0, threshold);
+            recompute();
+        }
+    }
+
+    /**
+     * Roll-ups for each location, then the chain-wide roll-up.
+     */
+    List<LocationRollup> rollups() {
+        List<LocationRollup> rollups = new ArrayList<>(locations.size() + 1);
+        long units = 0;
+        double value = 0;
+        for (Location location : locations) {
+            rollups.add(new LocationRollup(location.name, location.units, location.value, location.carried.cardinality(), location.lowStock));
+            units += location.units;
+            value += location.value;
+        }
+        rollups.add(new LocationRollup(null, units, value, size, chainLowStock));
+        return rollups;
+    }
+
+    /**
+     * Recomputes every roll-up from the quantities, one fork/join task per location, discarding the
+     * rounding drift of incremental value updates.
+     */
+    void recompute() {
+        long start = System.nanoTime();
+        locations.parallelStream().forEach(location -> location.recompute(prices, lowStockThreshold));
+        IntStream ordinals = live.stream();
+        if (size >= PARALLEL_THRESHOLD) {
+            ordinals = ordinals.parallel();
+        }
+        chainLowStock = (int) ordinals.filter(o -> totals[o] <= lowStockThreshold).count();
+        metrics.recordTime("locations.recompute", System.nanoTime() - start);
+    }
+
+    /**
+     * Writes every location changed since the last save, each to its own file.
+     */
+    void save() {
+        try {
+            for (Location location : locations) {
+                if (location.dirty) {
+                    Files.createDirectories(directory);
+                    write(location);
+                    location.dirty = false;
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to save locations to " + directory, ex);
+        }
+    }
+
+    /**
+     * Spreads a new chain-wide total over the locations: growth lands in the default location, shrinkage
+     * empties the default location first and then the others in order.
+     */
+    private void reconcile(int ordinal, int total) {
+        long difference = total - (long) totals[ordinal];
+        if (difference > 0) {
+            Location target = locations.get(0);
+            set(target, ordinal, (int) (target.quantities[ordinal] + difference));
+            return;
+        }
+        for (int i = 0; i < locations.size() && difference < 0; i++) {
+            Location location = locations.get(i);
+            int taken = (int) Math.min(location.quantities[ordinal], -difference);
+            if (taken > 0) {
+                set(location, ordinal, location.quantities[ordinal] - taken);
+                difference += taken;
+            }
+        }
+        if (!carriedAnywhere(ordinal)) {
+            set(locations.get(0), ordinal, 0);
+        }
+    }
+
+    /**
+     * Stores one quantity, keeping the location, chain and per-item totals current.
+     */
+    private void set(Location location, int ordinal, int quantity) {
+        int previous = location.quantities[ordinal];
+        boolean wasLow = totals[ordinal] <= lowStockThreshold;
+        location.set(ordinal, quantity, prices[ordinal], lowStockThreshold);
+        totals[ordinal] += quantity - previous;
+        boolean low = totals[ordinal] <= lowStockThreshold;
+        if (wasLow != low) {
+            chainLowStock += low ? 1 : -1;
+        }
+    }
+
+    private boolean carriedAnywhere(int ordinal) {
+        for (Location location : locations) {
+            if (location.carried.get(ordinal)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void read(Location location) {
+        try (FileChannel channel = FileChannel.open(location.file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_BYTES).flip();
+            fill(channel, buffer, 10);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a location file: " + location.file);
+            }
+            byte[] name = new byte[buffer.getShort() & 0xFFFF];
+            fill(channel, buffer, name.length + 4);
+            buffer.get(name);
+            location.name = new String(name, StandardCharsets.UTF_8);
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                if (buffer.remaining() < RECORD_BYTES) {
+                    fill(channel, buffer, RECORD_BYTES);
+                }
+                int ordinal = find(buffer.getLong(), buffer.getLong());
+                int quantity = buffer.getInt();
+                if (ordinal >= 0) {
+                    location.quantities[ordinal] = quantity;
+                    location.carried.set(ordinal);
+                } else {
+                    // The item was removed while this file was stale.
+                    location.dirty = true;
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read location file " + location.file, ex);
+        }
+    }
+
+    private void write(Location location) throws IOException {
+        Path temp = location.file.resolveSibling(location.file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_BYTES);
+            byte[] name = location.name.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putShort((short) name.length).put(name);
+            buffer.putInt(location.carried.cardinality());
+            for (int ordinal = location.carried.nextSetBit(0); ordinal >= 0; ordinal = location.carried.nextSetBit(ordinal + 1)) {
+                if (buffer.remaining() < RECORD_BYTES) {
+                    drain(channel, buffer);
+                }
+                buffer.putLong(most[ordinal]).putLong(least[ordinal]).putInt(location.quantities[ordinal]);
+            }
+            drain(channel, buffer);
+        }
+        Files.move(temp, location.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Tops up {@code buffer}, which is in read mode, until it holds at least {@code needed} unread bytes.
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated location file");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private Path fileFor(String name) {
+        String slug = name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-").replaceAll("^-|-$", "");
+        String file = (slug.isEmpty() ? "location" : slug) + "-" + Integer.toHexString(name.hashCode()) + SUFFIX;
+        return directory.resolve(file);
+    }
+
+    private int find(long idMost, long idLeast) {
+        int mask = table.length - 1;
+        for (int slot = hash(idMost, idLeast) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int ordinal = table[slot] - 1;
+            if (most[ordinal] == idMost && least[ordinal] == idLeast) {
+                return ordinal;
+            }
+        }
+        return -1;
+    }
+
+    private int assign(long idMost, long idLeast) {
+        int ordinal = freeCount > 0 ? free[--freeCount] : highWater++;
+        if (ordinal == most.length) {
+            int capacity = most.length * 2;
+            most = Arrays.copyOf(most, capacity);
+            least = Arrays.copyOf(least, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            totals = Arrays.copyOf(totals, capacity);
+            for (Location location : locations) {
+                location.quantities = Arrays.copyOf(location.quantities, capacity);
+            }
+        }
+        most[ordinal] = idMost;
+        least[ordinal] = idLeast;
+        totals[ordinal] = 0;
+        live.set(ordinal);
+        if (++size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        insert(ordinal);
+        return ordinal;
+    }
+
+    private void release(int ordinal) {
+        int mask = table.length - 1;
+        int slot = hash(most[ordinal], least[ordinal]) & mask;
+        while (table[slot] != ordinal + 1) {
+            slot = (slot + 1) & mask;
+        }
+        // Backward-shift deletion keeps every probe chain unbroken without tombstones.
+        for (int next = (slot + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = hash(most[table[next] - 1], least[table[next] - 1]) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                table[slot] = table[next];
+                slot = next;
+            }
+        }
+        table[slot] = 0;
+        live.clear(ordinal);
+        size--;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = ordinal;
+    }
+
+    private void insert(int ordinal) {
+        int mask = table.length - 1;
+        int slot = hash(most[ordinal], least[ordinal]) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = ordinal + 1;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+            insert(ordinal);
+        }
+    }
+
+    private static int hash(long idMost, long idLeast) {
+        long h = (idMost ^ idLeast) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Quantities and roll-ups of one location. An item is carried once it has held stock there, and only
+     * carried items count towards the location's low-stock roll-up.
+     */
+    private static final class Location {
+        private String name;
+        private final Path file;
+        private int[] quantities;
+        private final BitSet carried = new BitSet();
+        private long units;
+        private double value;
+        private int lowStock;
+        private boolean dirty;
+
+        Location(String name, Path file, int capacity) {
+            this.name = name;
+            this.file = file;
+            this.quantities = new int[capacity];
+        }
+
+        void set(int ordinal, int quantity, double price, int threshold) {
+            int previous = quantities[ordinal];
+            if (carried.get(ordinal)) {
+                if (previous <= threshold) {
+                    lowStock--;
+                }
+            } else {
+                carried.set(ordinal);
+            }
+            quantities[ordinal] = quantity;
+            units += quantity - previous;
+            value += (quantity - previous) * price;
+            if (quantity <= threshold) {
+                lowStock++;
+            }
+            dirty = true;
+        }
+
+        /**
+         * Stops carrying an item whose quantity has already been set to zero.
+         */
+        void forget(int ordinal, int threshold) {
+            if (carried.get(ordinal)) {
+                carried.clear(ordinal);
+                if (quantities[ordinal] <= threshold) {
+                    lowStock--;
+                }
+            }
+        }
+
+        void recompute(double[] prices, int threshold) {
+            long units = 0;
+            double value = 0;
+            int lowStock = 0;
+            for (int ordinal = carried.nextSetBit(0); ordinal >= 0; ordinal = carried.nextSetBit(ordinal + 1)) {
+                int quantity = quantities[ordinal];
+                units += quantity;
+                value += quantity * prices[ordinal];
+                if (quantity <= threshold) {
+                    lowStock++;
+                }
+            }
+            this.units = units;
+            this.value = value;
+            this.lowStock = lowStock;
+        }
+    }
+}
@@ -0,0 +1,599 @@
+package com.codex.inventory;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Item records kept outside the Java heap, for catalogs too large to hold as objects without long
+ * collection pauses.
+ * <p>
+ * Each item is a fixed-width 64-byte record in a direct buffer; names, each followed by the item's SKU,
+ * live in a string arena that may be backed by a memory-mapped file, and categories and units are stored as dictionary codes. An off-heap
+ * open-addressing index maps ids to record slots, keeping each id's hash beside its slot so probing reads
+ * only the record it is looking for. {@link #get(int)} builds an {@link InventoryItem} on
+ * every call, with the name and SKU left in the store until read, so items exist on the heap only while
+ * someone is using them. A {@linkplain #paged paged} store keeps records and names in files instead and
+ * holds only a bounded set of their pages in memory.
+ * <p>
+ * Records are never modified once written: a change writes a new record and retires the old slot, which is
+ * recycled only after every {@link InventorySnapshot} that could still see it has been garbage collected.
+ * Writes must be serialized by the caller (the {@link InventoryManager} lock); reads may run concurrently.
+ */
+public final class OffHeapItemStore implements AutoCloseable {
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    static final int RECORD_BYTES = 64;
+    private static final int SEGMENT_SHIFT = 16;
+    private static final int SEGMENT_RECORDS = 1 << SEGMENT_SHIFT;
+    private static final int ARENA_SHIFT = 24;
+    private static final long ARENA_SEGMENT_BYTES = 1L << ARENA_SHIFT;
+
+    /** 4 KiB pages: 64 records, and never a record split across two. */
+    private static final int PAGE_SHIFT = 12;
+    private static final int MIN_PAGE_FRAMES = 16;
+
+    private static final int MAX_CODES = 1 << 16;
+    private static final int SKU_SHIFT = 24;
+
+    // Record layout: one cache line per item.
+    private static final int ID_MOST = 0;
+    private static final int ID_LEAST = 8;
+    private static final int NAME_OFFSET = 16;
+    /** Name bytes in the low {@value #SKU_SHIFT} bits, SKU bytes (at most 255) above them. */
+    private static final int NAME_LENGTH = 24;
+    private static final int CATEGORY = 28;
+    private static final int UNIT = 30;
+    private static final int QUANTITY = 32;
+    private static final int EXPIRATION = 36;
+    private static final int PRICE = 40;
+    private static final int UPDATED_AT = 48;
+    private static final int BORN = 56;
+
+    private final FileChannel arenaFile;
+    /** Records and names of a paged store; null when they live in {@link #records} and {@link #arena}. */
+    private final PageCache recordPages;
+    private final PageCache textPages;
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final ConcurrentSkipListMap<Long, Integer> liveVersions = new ConcurrentSkipListMap<>();
+    private final AtomicLong releases = new AtomicLong();
+
+    private volatile ByteBuffer[] records = new ByteBuffer[0];
+    private volatile ByteBuffer[] arena = new ByteBuffer[0];
+    private volatile String[] strings = {""};
+    private int nextSlot;
+    private long arenaEnd;
+    private long arenaGarbage;
+
+    /** Pairs of slot plus one (0 when empty) and the id's hash. */
+    private IntBuffer index = allocate(2 * 16 * Integer.BYTES).asIntBuffer();
+    private int indexed;
+
+    private int[] free = new int[64];
+    private int freeCount;
+    private long[] retiredVersions = new long[64];
+    private int[] retiredSlots = new int[64];
+    private int retiredCount;
+    private long reclaimedAt = -1;
+
+    private OffHeapItemStore(FileChannel arenaFile, PageCache recordPages, PageCache textPages) {
+        this.arenaFile = arenaFile;
+        this.recordPages = recordPages;
+        this.textPages = textPages;
+        codes.put("", 0);
+    }
+
+    /**
+     * Creates a store whose records and names live in direct memory.
+     */
+    public static OffHeapItemStore allocate() {
+        return new OffHeapItemStore(null, null, null);
+    }
+
+    /**
+     * Creates a store whose name arena is mapped from {@code arenaFile}, so the operating system can page
+     * names out under memory pressure. The file is scratch space: it is truncated here and its contents are
+     * meaningless once the store is closed.
+     */
+    public static OffHeapItemStore mapped(Path arenaFile) {
+        try {
+            return new OffHeapItemStore(scratch(arenaFile), null, null);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to open arena file " + arenaFile, ex);
+        }
+    }
+
+    /**
+     * Creates a store whose records and names live in scratch files under {@code directory}, with at most
+     * {@code residentBytes} of their pages held in memory, for machines that cannot spare memory for the
+     * whole catalog. Besides the pages only the id index (about sixteen bytes per item) and the category and
+     * unit codes stay resident. Pages are replaced by CLOCK; hits, misses and evictions are counted under
+     * {@code itemPages.*} and {@code namePages.*} in {@link InventoryMetrics}. The files are truncated here.
+     */
+    public static OffHeapItemStore paged(Path directory, long residentBytes) {
+        int frames = (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_PAGE_FRAMES, residentBytes >> PAGE_SHIFT));
+        // A random item touches one page of each; scans that skip names leave the name pages alone.
+        int textFrames = frames / 2;
+        try {
+            Files.createDirectories(directory);
+            PageCache records = new PageCache(scratch(directory.resolve("items.pages")), PAGE_SHIFT, frames - textFrames, "itemPages");
+            PageCache names = new PageCache(scratch(directory.resolve("names.pages")), PAGE_SHIFT, textFrames, "namePages");
+            return new OffHeapItemStore(null, records, names);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to open page files in " + directory, ex);
+        }
+    }
+
+    private static FileChannel scratch(Path file) throws IOException {
+        return FileChannel.open(
+                file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+        );
+    }
+
+    /**
+     * Builds an on-heap view of the record in {@code slot}.
+     */
+    InventoryItem get(int slot) {
+        ByteBuffer record = record(slot);
+        String[] dictionary = strings;
+        return new InventoryItem(
+                record.getLong(ID_MOST),
+                record.getLong(ID_LEAST),
+                this,
+                record.getLong(NAME_OFFSET),
+                record.getInt(NAME_LENGTH),
+                dictionary[record.getShort(CATEGORY) & 0xFFFF],
+                record.getInt(QUANTITY),
+                dictionary[record.getShort(UNIT) & 0xFFFF],
+                record.getDouble(PRICE),
+                record.getInt(EXPIRATION),
+                record.getLong(UPDATED_AT)
+        );
+    }
+
+    /**
+     * Name stored at {@code offset} for a record whose packed lengths are {@code lengths}. Arena bytes are never
+     * overwritten, so this is valid for as long as the store is open.
+     */
+    String name(long offset, int lengths) {
+        byte[] bytes = new byte[lengths & ((1 << SKU_SHIFT) - 1)];
+        readText(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * SKU stored after the name at {@code offset}, or an empty string.
+     */
+    String sku(long offset, int lengths) {
+        int nameLength = lengths & ((1 << SKU_SHIFT) - 1);
+        if (lengths >>> SKU_SHIFT == 0) {
+            return "";
+        }
+        byte[] bytes = new byte[lengths >>> SKU_SHIFT];
+        readText(offset + nameLength, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    boolean hasId(int slot, long most, long least) {
+        return recordLong(slot, ID_MOST) == most && recordLong(slot, ID_LEAST) == least;
+    }
+
+    /**
+     * Slot holding the current record for the id, or -1.
+     */
+    int find(long most, long least) {
+        int hash = hash(most, least);
+        int mask = buckets() - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int entry = index.get(2 * i);
+            if (entry == 0) {
+                return -1;
+            }
+            if (index.get(2 * i + 1) == hash && hasId(entry - 1, most, least)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Number of items currently indexed.
+     */
+    public int size() {
+        return indexed;
+    }
+
+    /**
+     * Bytes of direct or mapped memory held by records, names and the index; for a paged store, by the
+     * resident pages and the index.
+     */
+    public long reservedBytes() {
+        long indexBytes = (long) index.capacity() * Integer.BYTES;
+        if (recordPages != null) {
+            return recordPages.residentBytes() + textPages.residentBytes() + indexBytes;
+        }
+        return (long) records.length * SEGMENT_RECORDS * RECORD_BYTES + arena.length * ARENA_SEGMENT_BYTES + indexBytes;
+    }
+
+    /**
+     * Share of page reads served from memory since the store was created, or 1 when the store is not paged.
+     */
+    public double pageHitRate() {
+        if (recordPages == null) {
+            return 1;
+        }
+        long hits = recordPages.hits() + textPages.hits();
+        long total = hits + recordPages.misses() + textPages.misses();
+        return total == 0 ? 1 : (double) hits / total;
+    }
+
+    /**
+     * Pages written back or dropped to make room since the store was created.
+     */
+    public long pageEvictions() {
+        return recordPages == null ? 0 : recordPages.evictions() + textPages.evictions();
+    }
+
+    /**
+     * Arena bytes no longer referenced by any record. Renamed and removed items leave their names behind
+     * until the store is rebuilt.
+     */
+    public long arenaGarbageBytes() {
+        return arenaGarbage;
+    }
+
+    /**
+     * Writes {@code item} to a free slot for a snapshot of {@code version} and makes it the indexed record
+     * for its id.
+     */
+    int append(InventoryItem item, long version) {
+        int previous = find(item.getIdMostSigBits(), item.getIdLeastSigBits());
+        int slot = allocateSlot();
+        byte[] name = item.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] sku = item.getSku().getBytes(StandardCharsets.UTF_8);
+        if (name.length >= 1 << SKU_SHIFT || sku.length > 0xFF) {
+            throw new IllegalArgumentException("Item name or SKU is too long: " + name.length + " and " + sku.length + " bytes");
+        }
+        byte[] text = name;
+        if (sku.length > 0) {
+            text = Arrays.copyOf(name, name.length + sku.length);
+            System.arraycopy(sku, 0, text, name.length, sku.length);
+        }
+        int lengths = sku.length << SKU_SHIFT | name.length;
+        long nameOffset = previous >= 0 && sameText(previous, text, lengths) ? nameOffset(previous) : writeName(text);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES).order(ByteOrder.nativeOrder());
+        record.putLong(ID_MOST, item.getIdMostSigBits());
+        record.putLong(ID_LEAST, item.getIdLeastSigBits());
+        record.putLong(NAME_OFFSET, nameOffset);
+        record.putInt(NAME_LENGTH, lengths);
+        record.putShort(CATEGORY, code(item.getCategory()));
+        record.putShort(UNIT, code(item.getUnit()));
+        record.putInt(QUANTITY, item.getQuantity());
+        record.putInt(EXPIRATION, item.getExpirationEpochDay());
+        record.putDouble(PRICE, item.getPrice());
+        record.putLong(UPDATED_AT, item.getUpdatedAtMicros());
+        record.putLong(BORN, version);
+        writeRecord(slot, record.array());
+        if (previous >= 0) {
+            index.put(2 * indexSlot(previous), slot + 1);
+        } else {
+            indexPut(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Marks {@code slot} as absent from snapshots of {@code version} onwards. The slot is reused once no
+     * snapshot between the one that wrote it and {@code version} is reachable.
+     */
+    void retire(int slot, long version) {
+        int current = find(recordLong(slot, ID_MOST), recordLong(slot, ID_LEAST));
+        if (current == slot) {
+            indexRemove(slot);
+        }
+        boolean shared = current >= 0 && current != slot && nameOffset(current) == nameOffset(slot);
+        if (!shared) {
+            int lengths = recordInt(slot, NAME_LENGTH);
+            arenaGarbage += (lengths & ((1 << SKU_SHIFT) - 1)) + (lengths >>> SKU_SHIFT);
+        }
+        if (retiredCount == retiredSlots.length) {
+            retiredVersions = Arrays.copyOf(retiredVersions, retiredCount * 2);
+            retiredSlots = Arrays.copyOf(retiredSlots, retiredCount * 2);
+        }
+        retiredVersions[retiredCount] = version;
+        retiredSlots[retiredCount++] = slot;
+    }
+
+    /**
+     * Records that a snapshot of {@code version} exists until {@code snapshot} is collected.
+     */
+    void register(InventorySnapshot snapshot, long version) {
+        liveVersions.merge(version, 1, Integer::sum);
+        CLEANER.register(snapshot, () -> {
+            liveVersions.computeIfPresent(version, (v, count) -> count == 1 ? null : count - 1);
+            releases.incrementAndGet();
+        });
+    }
+
+    /**
+     * Releases the store's memory. Snapshots backed by it must not be read afterwards; mapped arena segments
+     * are unmapped when the garbage collector reclaims them.
+     */
+    @Override
+    public void close() {
+        records = new ByteBuffer[0];
+        arena = new ByteBuffer[0];
+        index = allocate(2 * 16 * Integer.BYTES).asIntBuffer();
+        if (recordPages != null) {
+            recordPages.close();
+            textPages.close();
+        }
+        if (arenaFile != null) {
+            try {
+                arenaFile.close();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Unable to close arena file", ex);
+            }
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount == 0) {
+            reclaim();
+        }
+        if (freeCount > 0) {
+            return free[--freeCount];
+        }
+        int slot = nextSlot++;
+        if (recordPages == null && slot >>> SEGMENT_SHIFT == records.length) {
+            ByteBuffer[] grown = Arrays.copyOf(records, records.length + 1);
+            grown[records.length] = allocate(SEGMENT_RECORDS * RECORD_BYTES);
+            records = grown;
+        }
+        return slot;
+    }
+
+    /**
+     * Moves retired slots to the free list once no reachable snapshot can see them. A slot is visible to
+     * versions from the one that wrote it up to, but excluding, the one that retired it, so a long-lived
+     * old snapshot holds back only the slots it contains. Rescans only after some snapshot was collected.
+     */
+    private void reclaim() {
+        long seen = releases.get();
+        if (seen == reclaimedAt) {
+            return;
+        }
+        reclaimedAt = seen;
+        int kept = 0;
+        for (int i = 0; i < retiredCount; i++) {
+            int slot = retiredSlots[i];
+            Long live = liveVersions.ceilingKey(recordLong(slot, BORN));
+            if (live == null || live >= retiredVersions[i]) {
+                if (freeCount == free.length) {
+                    free = Arrays.copyOf(free, free.length * 2);
+                }
+                free[freeCount++] = slot;
+            } else {
+                retiredVersions[kept] = retiredVersions[i];
+                retiredSlots[kept++] = slot;
+            }
+        }
+        retiredCount = kept;
+    }
+
+    private short code(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = strings.length;
+            if (code == MAX_CODES) {
+                throw new IllegalStateException("More than " + MAX_CODES + " distinct categories and units");
+            }
+            String[] grown = Arrays.copyOf(strings, code + 1);
+            grown[code] = value;
+            strings = grown;
+            codes.put(value, code);
+        }
+        return (short) (int) code;
+    }
+
+    private long nameOffset(int slot) {
+        return recordLong(slot, NAME_OFFSET);
+    }
+
+    // Records and names live in segments or, for a paged store, in page files; these helpers hide the difference.
+
+    private long recordLong(int slot, int field) {
+        if (recordPages != null) {
+            return recordPages.getLong((long) slot * RECORD_BYTES + field);
+        }
+        return records[slot >>> SEGMENT_SHIFT].getLong((slot & (SEGMENT_RECORDS - 1)) * RECORD_BYTES + field);
+    }
+
+    private int recordInt(int slot, int field) {
+        if (recordPages != null) {
+            return recordPages.getInt((long) slot * RECORD_BYTES + field);
+        }
+        return records[slot >>> SEGMENT_SHIFT].getInt((slot & (SEGMENT_RECORDS - 1)) * RECORD_BYTES + field);
+    }
+
+    /**
+     * The record in {@code slot}, starting at position 0: a view of its segment, or a copy of it for a paged
+     * store so the page can be evicted while the caller reads.
+     */
+    private ByteBuffer record(int slot) {
+        if (recordPages != null) {
+            byte[] copy = new byte[RECORD_BYTES];
+            recordPages.read((long) slot * RECORD_BYTES, copy);
+            return ByteBuffer.wrap(copy).order(ByteOrder.nativeOrder());
+        }
+        ByteBuffer view = records[slot >>> SEGMENT_SHIFT].duplicate();
+        view.position((slot & (SEGMENT_RECORDS - 1)) * RECORD_BYTES);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    private void writeRecord(int slot, byte[] record) {
+        if (recordPages != null) {
+            recordPages.write((long) slot * RECORD_BYTES, record);
+            return;
+        }
+        ByteBuffer view = records[slot >>> SEGMENT_SHIFT].duplicate();
+        view.position((slot & (SEGMENT_RECORDS - 1)) * RECORD_BYTES);
+        view.put(record);
+    }
+
+    private void readText(long offset, byte[] target) {
+        if (textPages != null) {
+            textPages.read(offset, target);
+            return;
+        }
+        ByteBuffer view = arena[(int) (offset >>> ARENA_SHIFT)].duplicate();
+        view.position((int) (offset & (ARENA_SEGMENT_BYTES - 1)));
+        view.get(target);
+    }
+
+    /**
+     * Whether {@code slot} already stores this name and SKU, so an update can share its arena bytes.
+     */
+    private boolean sameText(int slot, byte[] text, int lengths) {
+        if (recordInt(slot, NAME_LENGTH) != lengths) {
+            return false;
+        }
+        byte[] stored = new byte[text.length];
+        readText(nameOffset(slot), stored);
+        return Arrays.equals(stored, text);
+    }
+
+    /**
+     * Appends name and SKU bytes to the arena. They never straddle two arena segments.
+     */
+    private long writeName(byte[] name) {
+        if (name.length > ARENA_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Item name is too long: " + name.length + " bytes");
+        }
+        if (textPages != null) {
+            long offset = arenaEnd;
+            textPages.write(offset, name);
+            arenaEnd += name.length;
+            return offset;
+        }
+        long position = arenaEnd & (ARENA_SEGMENT_BYTES - 1);
+        if (position + name.length > ARENA_SEGMENT_BYTES) {
+            arenaGarbage += ARENA_SEGMENT_BYTES - position;
+            arenaEnd += ARENA_SEGMENT_BYTES - position;
+        }
+        int segment = (int) (arenaEnd >>> ARENA_SHIFT);
+        if (segment == arena.length) {
+            ByteBuffer[] grown = Arrays.copyOf(arena, arena.length + 1);
+            grown[segment] = arenaSegment(segment);
+            arena = grown;
+        }
+        long offset = arenaEnd;
+        ByteBuffer view = arena[segment].duplicate();
+        view.position((int) (offset & (ARENA_SEGMENT_BYTES - 1)));
+        view.put(name);
+        arenaEnd += name.length;
+        return offset;
+    }
+
+    private ByteBuffer arenaSegment(int segment) {
+        if (arenaFile == null) {
+            return allocate((int) ARENA_SEGMENT_BYTES);
+        }
+        try {
+            return arenaFile.map(FileChannel.MapMode.READ_WRITE, segment * ARENA_SEGMENT_BYTES, ARENA_SEGMENT_BYTES);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to map arena segment " + segment, ex);
+        }
+    }
+
+    private int buckets() {
+        return index.capacity() / 2;
+    }
+
+    private void indexPut(int slot) {
+        indexPut(slot, hash(recordLong(slot, ID_MOST), recordLong(slot, ID_LEAST)));
+    }
+
+    private void indexPut(int slot, int hash) {
+        if ((indexed + 1) * 2 > buckets()) {
+            resizeIndex(buckets() * 2);
+        }
+        int mask = buckets() - 1;
+        int i = hash & mask;
+        while (index.get(2 * i) != 0) {
+            i = (i + 1) & mask;
+        }
+        index.put(2 * i, slot + 1);
+        index.put(2 * i + 1, hash);
+        indexed++;
+    }
+
+    /**
+     * Bucket of {@code slot} in the index; the slot must be indexed.
+     */
+    private int indexSlot(int slot) {
+        int mask = buckets() - 1;
+        int i = hash(recordLong(slot, ID_MOST), recordLong(slot, ID_LEAST)) & mask;
+        while (index.get(2 * i) != slot + 1) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void indexRemove(int slot) {
+        int mask = buckets() - 1;
+        int hole = indexSlot(slot);
+        // Backward-shift deletion, as in ItemIdIndex.
+        for (int next = (hole + 1) & mask; index.get(2 * next) != 0; next = (next + 1) & mask) {
+            int hash = index.get(2 * next + 1);
+            int home = hash & mask;
+            boolean movable = hole <= next ? home <= hole || home > next : home <= hole && home > next;
+            if (movable) {
+                index.put(2 * hole, index.get(2 * next));
+                index.put(2 * hole + 1, hash);
+                hole = next;
+            }
+        }
+        index.put(2 * hole, 0);
+        indexed--;
+    }
+
+    private void resizeIndex(int buckets) {
+        IntBuffer old = index;
+        index = allocate(2 * buckets * Integer.BYTES).asIntBuffer();
+        indexed = 0;
+        for (int i = 0; i < old.capacity(); i += 2) {
+            int entry = old.get(i);
+            if (entry != 0) {
+                indexPut(entry - 1, old.get(i + 1));
+            }
+        }
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static int hash(long most, long least) {
+        long h = most ^ least;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,352 @@
+package com.codex.inventory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A file read and written in fixed-size pages through a bounded set of resident frames in direct memory.
+ * <p>
+ * Frames are replaced with the CLOCK algorithm: every access sets the frame's reference bit, and the hand
+ * evicts the first frame it finds clear, clearing bits as it passes, which approximates LRU without
+ * reordering anything on a hit. Dirty frames are written back when evicted. Pages are spread over up to
+ * {@value #MAX_STRIPES} stripes by page number, each with its own frames, clock and lock, so parallel scans
+ * of different pages do not wait on each other; accesses to one stripe are serialized. A value never
+ * straddles two pages unless read or written as a byte array.
+ */
+final class PageCache implements AutoCloseable {
+    /** Hits are published to the metrics in batches so the hot path stays a field update. */
+    private static final int HIT_BATCH = 4096;
+    private static final int MAX_STRIPES = 16;
+    /** Fewest frames a stripe is given, so small caches stay one stripe with a useful clock. */
+    private static final int MIN_STRIPE_FRAMES = 8;
+
+    private final FileChannel file;
+    private final String metricPrefix;
+    private final int pageShift;
+    private final int pageBytes;
+    private final int stripeShift;
+    private final Stripe[] stripes;
+    private final InventoryMetrics metrics = InventoryMetrics.global();
+
+    /**
+     * @param metricPrefix prefix of the {@code .hits}, {@code .misses} and {@code .evictions} counters
+     */
+    PageCache(FileChannel file, int pageShift, int frameCount, String metricPrefix) {
+        if (frameCount < 2) {
+            throw new IllegalArgumentException("A page cache needs at least two frames");
+        }
+        this.file = file;
+        this.metricPrefix = metricPrefix;
+        this.pageShift = pageShift;
+        this.pageBytes = 1 << pageShift;
+        int stripeCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, frameCount / MIN_STRIPE_FRAMES)));
+        this.stripeShift = Integer.numberOfTrailingZeros(stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(frameCount / stripeCount + (i < frameCount % stripeCount ? 1 : 0));
+        }
+    }
+
+    long getLong(long position) {
+        Stripe stripe = stripe(position);
+        synchronized (stripe) {
+            return stripe.frame(position, false).getLong(offset(position));
+        }
+    }
+
+    int getInt(long position) {
+        Stripe stripe = stripe(position);
+        synchronized (stripe) {
+            return stripe.frame(position, false).getInt(offset(position));
+        }
+    }
+
+    short getShort(long position) {
+        Stripe stripe = stripe(position);
+        synchronized (stripe) {
+            return stripe.frame(position, false).getShort(offset(position));
+        }
+    }
+
+    void putLong(long position, long value) {
+        Stripe stripe = stripe(position);
+        synchronized (stripe) {
+            stripe.frame(position, true).putLong(offset(position), value);
+        }
+    }
+
+    void putInt(long position, int value) {
+        Stripe stripe = stripe(position);
+        synchronized (stripe) {
+            stripe.frame(position, true).putInt(offset(position), value);
+        }
+    }
+
+    void putShort(long position, short value) {
+        Stripe stripe = stripe(position);
+        synchronized (stripe) {
+            stripe.frame(position, true).putShort(offset(position), value);
+        }
+    }
+
+    void putDouble(long position, double value) {
+        Stripe stripe = stripe(position);
+        synchronized (stripe) {
+            stripe.frame(position, true).putDouble(offset(position), value);
+        }
+    }
+
+    /**
+     * Fills {@code target} from {@code position} onwards.
+     */
+    void read(long position, byte[] target) {
+        int done = 0;
+        while (done < target.length) {
+            long at = position + done;
+            int count = Math.min(target.length - done, pageBytes - offset(at));
+            Stripe stripe = stripe(at);
+            synchronized (stripe) {
+                ByteBuffer view = stripe.frame(at, false).duplicate();
+                view.position(offset(at));
+                view.get(target, done, count);
+            }
+            done += count;
+        }
+    }
+
+    void write(long position, byte[] source) {
+        int done = 0;
+        while (done < source.length) {
+            long at = position + done;
+            int count = Math.min(source.length - done, pageBytes - offset(at));
+            Stripe stripe = stripe(at);
+            synchronized (stripe) {
+                ByteBuffer view = stripe.frame(at, true).duplicate();
+                view.position(offset(at));
+                view.put(source, done, count);
+            }
+            done += count;
+        }
+    }
+
+    long hits() {
+        long hits = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                hits += stripe.hits;
+            }
+        }
+        return hits;
+    }
+
+    long misses() {
+        long misses = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                misses += stripe.misses;
+            }
+        }
+        return misses;
+    }
+
+    long evictions() {
+        long evictions = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                evictions += stripe.evictions;
+            }
+        }
+        return evictions;
+    }
+
+    /**
+     * Bytes of direct memory held by frames allocated so far; never more than frames × page size.
+     */
+    long residentBytes() {
+        long frames = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                frames += stripe.usedFrames;
+            }
+        }
+        return frames * pageBytes;
+    }
+
+    @Override
+    public void close() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.publishHits();
+            }
+        }
+        try {
+            file.close();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to close page file", ex);
+        }
+    }
+
+    private int offset(long position) {
+        return (int) (position & (pageBytes - 1));
+    }
+
+    private Stripe stripe(long position) {
+        return stripes[(int) (position >>> pageShift) & (stripes.length - 1)];
+    }
+
+    /**
+     * The frames caching every page whose number leaves the stripe's index in its low bits. Guarded by its
+     * own monitor.
+     */
+    private final class Stripe {
+        private final ByteBuffer[] frames;
+        /** Page in each frame, or -1 while the frame holds none. */
+        private final long[] pageOfFrame;
+        private final boolean[] referenced;
+        private final boolean[] dirty;
+        /** Frames allocated but holding no page, such as after a failed read; used before evicting. */
+        private final int[] freeFrames;
+        private int freeCount;
+        /** Frame holding each of this stripe's pages plus one, or 0, indexed by page number over stripes. */
+        private int[] frameOfPage = new int[64];
+        private int usedFrames;
+        private int hand;
+        private int lastFrame = -1;
+        private long lastPage = -1;
+        private long hits;
+        private long misses;
+        private long evictions;
+        private int unpublishedHits;
+
+        private Stripe(int frameCount) {
+            this.frames = new ByteBuffer[frameCount];
+            this.pageOfFrame = new long[frameCount];
+            this.referenced = new boolean[frameCount];
+            this.dirty = new boolean[frameCount];
+            this.freeFrames = new int[frameCount];
+        }
+
+        /**
+         * Buffer of the frame holding the page at {@code position}, reading it in first on a miss.
+         */
+        ByteBuffer frame(long position, boolean write) {
+            long page = position >>> pageShift;
+            long local = page >>> stripeShift;
+            int frame;
+            if (page == lastPage) {
+                frame = lastFrame;
+                hit();
+            } else if (local < frameOfPage.length && frameOfPage[(int) local] != 0) {
+                frame = frameOfPage[(int) local] - 1;
+                hit();
+            } else {
+                frame = load(page);
+            }
+            referenced[frame] = true;
+            dirty[frame] |= write;
+            lastPage = page;
+            lastFrame = frame;
+            return frames[frame];
+        }
+
+        private void hit() {
+            hits++;
+            if (++unpublishedHits == HIT_BATCH) {
+                publishHits();
+            }
+        }
+
+        void publishHits() {
+            if (unpublishedHits > 0) {
+                metrics.add(metricPrefix + ".hits", unpublishedHits);
+                unpublishedHits = 0;
+            }
+        }
+
+        private int load(long page) {
+            misses++;
+            metrics.increment(metricPrefix + ".misses");
+            int frame;
+            if (freeCount > 0) {
+                frame = freeFrames[--freeCount];
+            } else if (usedFrames < frames.length) {
+                frame = usedFrames++;
+                frames[frame] = ByteBuffer.allocateDirect(pageBytes).order(ByteOrder.nativeOrder());
+            } else {
+                frame = victim();
+                evict(frame);
+            }
+            ByteBuffer buffer = frames[frame];
+            buffer.clear();
+            try {
+                long start = page << pageShift;
+                while (buffer.hasRemaining()) {
+                    int read = file.read(buffer, start + buffer.position());
+                    if (read < 0) {
+                        // Past the end of the file: the page has never been written.
+                        while (buffer.hasRemaining()) {
+                            buffer.put((byte) 0);
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                // The frame holds part of this page and nothing of the one it held before; keep it from
+                // being found or written back.
+                pageOfFrame[frame] = -1;
+                dirty[frame] = false;
+                referenced[frame] = false;
+                freeFrames[freeCount++] = frame;
+                throw new IllegalStateException("Unable to read page " + page, ex);
+            }
+            buffer.clear();
+            long local = page >>> stripeShift;
+            if (local >= frameOfPage.length) {
+                frameOfPage = Arrays.copyOf(frameOfPage, (int) Math.max(frameOfPage.length * 2L, local + 1));
+            }
+            frameOfPage[(int) local] = frame + 1;
+            pageOfFrame[frame] = page;
+            dirty[frame] = false;
+            return frame;
+        }
+
+        /**
+         * Advances the clock hand to the first frame not referenced since the hand last passed it.
+         */
+        private int victim() {
+            while (true) {
+                int frame = hand;
+                hand = (hand + 1) % frames.length;
+                if (!referenced[frame]) {
+                    return frame;
+                }
+                referenced[frame] = false;
+            }
+        }
+
+        private void evict(int frame) {
+            long page = pageOfFrame[frame];
+            if (dirty[frame]) {
+                ByteBuffer buffer = frames[frame].duplicate();
+                buffer.clear();
+                try {
+                    while (buffer.hasRemaining()) {
+                        file.write(buffer, (page << pageShift) + buffer.position());
+                    }
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Unable to write page " + page, ex);
+                }
+                dirty[frame] = false;
+            }
+            frameOfPage[(int) (page >>> stripeShift)] = 0;
+            pageOfFrame[frame] = -1;
+            evictions++;
+            metrics.increment(metricPrefix + ".evictions");
+            if (lastFrame == frame) {
+                lastPage = -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.codex.inventory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Recently used query results, keyed by the query's canonical text, so flipping back to a recent view
+ * (a category, low stock at some threshold, a search) skips the scan and sort.
+ * <p>
+ * Each entry remembers the snapshot version it reflects. The manager logs the item changes of the last
+ * {@value #LOG_LIMIT} events; an entry a few versions behind is brought up to date by removing the rows
+ * those changes touched and merging in their matching new versions, in O(n + k log k) instead of a
+ * full scan. Entries the log no longer covers are dropped on access. Every method is called under the
+ * manager lock except {@link #put}.
+ */
+final class QueryResultCache {
+    static final int MAX_ENTRIES = 16;
+    /** Rows held across all entries; past this the least recently used entries go first. */
+    static final long MAX_ROWS = 2_000_000;
+    static final int LOG_LIMIT = 1024;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(MAX_ENTRIES * 2, 0.75f, true);
+    private final ArrayDeque<InventoryChangeEvent> log = new ArrayDeque<>();
+    private final InventoryMetrics metrics = InventoryMetrics.global();
+    /** Changes up to this version may be missing from the log. */
+    private long floorVersion;
+    private long rows;
+
+    /**
+     * Notes one item change; called from the manager's change tracking.
+     */
+    synchronized void record(InventoryChangeEvent event) {
+        if (entries.isEmpty()) {
+            // Nothing to patch; any later entry reflects at least this version.
+            log.clear();
+            floorVersion = event.getVersion();
+            return;
+        }
+        if (log.size() == LOG_LIMIT) {
+            floorVersion = log.removeFirst().getVersion();
+        }
+        log.addLast(event);
+    }
+
+    /**
+     * Results of {@code query} at {@code version}, patched forward if needed, or null on a miss.
+     */
+    synchronized InventoryQuery.Result get(InventoryQuery query, long version) {
+        String key = query.toString();
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            metrics.increment("queryCache.misses");
+            return null;
+        }
+        if (entry.version == version) {
+            metrics.increment("queryCache.hits");
+            return new InventoryQuery.Result(entry.items, "cache (" + entry.items.size() + " rows)", entry.totalValue);
+        }
+        List<InventoryChangeEvent> changes = entry.version > floorVersion && entry.version < version
+                ? changesAfter(entry.version, version)
+                : null;
+        Entry patched = changes == null ? null : patch(query, entry, version, changes);
+        if (patched == null) {
+            remove(key);
+            metrics.increment("queryCache.misses");
+            return null;
+        }
+        store(key, patched);
+        metrics.increment("queryCache.patched");
+        String plan = "cache + " + changes.size() + " changes (" + patched.items.size() + " rows)";
+        return new InventoryQuery.Result(patched.items, plan, patched.totalValue);
+    }
+
+    /**
+     * Caches {@code items}, the results of {@code query} at {@code version} worth {@code totalValue}.
+     * Returns them read-only.
+     */
+    synchronized List<InventoryItem> put(InventoryQuery query, long version, List<InventoryItem> items, double totalValue) {
+        List<InventoryItem> frozen = Collections.unmodifiableList(items);
+        if (items.size() <= MAX_ROWS) {
+            String key = query.toString();
+            Entry existing = entries.get(key);
+            if (existing == null || existing.version <= version) {
+                store(key, new Entry(version, frozen, totalValue));
+            }
+        }
+        return frozen;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        log.clear();
+        rows = 0;
+    }
+
+    private void store(String key, Entry entry) {
+        remove(key);
+        entries.put(key, entry);
+        rows += entry.items.size();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((entries.size() > MAX_ENTRIES || rows > MAX_ROWS) && eldest.hasNext()) {
+            rows -= eldest.next().items.size();
+            eldest.remove();
+            metrics.increment("queryCache.evictions");
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            rows -= removed.items.size();
+        }
+    }
+
+    private List<InventoryChangeEvent> changesAfter(long from, long to) {
+        List<InventoryChangeEvent> changes = new ArrayList<>();
+        for (InventoryChangeEvent event : log) {
+            if (event.getVersion() > from && event.getVersion() <= to) {
+                changes.add(event);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * {@code entry} at {@code version}: every item in {@code changes} taken out of its rows and the latest
+     * version of each that still matches merged back in. Null if a row to remove cannot be found.
+     */
+    private static Entry patch(InventoryQuery query, Entry entry, long version, List<InventoryChangeEvent> changes) {
+        Map<UUID, InventoryItem[]> netChanges = new HashMap<>();
+        for (InventoryChangeEvent event : changes) {
+            InventoryItem item = event.getCurrent() != null ? event.getCurrent() : event.getPrevious();
+            InventoryItem[] net = netChanges.computeIfAbsent(item.getId(), id -> new InventoryItem[] {event.getPrevious(), null});
+            net[1] = event.getCurrent();
+        }
+        Comparator<InventoryItem> order = query.order();
+        List<InventoryItem> rows = entry.items;
+        double totalValue = entry.totalValue;
+        int[] dropped = new int[netChanges.size()];
+        int droppedCount = 0;
+        List<InventoryItem> inserts = new ArrayList<>();
+        for (InventoryItem[] net : netChanges.values()) {
+            if (net[0] != null && query.test(net[0])) {
+                int row = find(rows, net[0], order);
+                if (row < 0) {
+                    return null;
+                }
+                dropped[droppedCount++] = row;
+                totalValue -= net[0].getPrice() * net[0].getQuantity();
+            }
+            if (net[1] != null && query.test(net[1])) {
+                inserts.add(net[1]);
+                totalValue += net[1].getPrice() * net[1].getQuantity();
+            }
+        }
+        Arrays.sort(dropped, 0, droppedCount);
+        inserts.sort(order);
+        List<InventoryItem> patched = new ArrayList<>(rows.size() - droppedCount + inserts.size());
+        int next = 0;
+        int drop = 0;
+        for (InventoryItem insert : inserts) {
+            int at = upperBound(rows, insert, order);
+            while (next < at) {
+                int stop = drop < droppedCount && dropped[drop] < at ? dropped[drop] : at;
+                patched.addAll(rows.subList(next, stop));
+                next = stop;
+                if (drop < droppedCount && dropped[drop] == next) {
+                    next++;
+                    drop++;
+                }
+            }
+            patched.add(insert);
+        }
+        while (next < rows.size()) {
+            int stop = drop < droppedCount ? dropped[drop] : rows.size();
+            patched.addAll(rows.subList(next, stop));
+            next = stop;
+            if (drop < droppedCount && dropped[drop] == next) {
+                next++;
+                drop++;
+            }
+        }
+        return new Entry(version, Collections.unmodifiableList(patched), totalValue);
+    }
+
+    /**
+     * Row holding {@code item}'s id among the rows that sort equal to it, or -1.
+     */
+    private static int find(List<InventoryItem> rows, InventoryItem item, Comparator<InventoryItem> order) {
+        for (int row = lowerBound(rows, item, order); row < rows.size() && order.compare(rows.get(row), item) == 0; row++) {
+            if (rows.get(row).hasId(item.getId())) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private static int lowerBound(List<InventoryItem> rows, InventoryItem item, Comparator<InventoryItem> order) {
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (order.compare(rows.get(mid), item) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int upperBound(List<InventoryItem> rows, InventoryItem item, Comparator<InventoryItem> order) {
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (order.compare(rows.get(mid), item) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static final class Entry {
+        private final long version;
+        private final List<InventoryItem> items;
+        private final double totalValue;
+
+        private Entry(long version, List<InventoryItem> items, double totalValue) {
+            this.version = version;
+            this.items = items;
+            this.totalValue = totalValue;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.codex.inventory;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-item depletion rates, projected stock-out dates and suggested reorder quantities.
+ * <p>
+ * An item's rate is its consumption (negative quantity changes) weighted by {@code exp(-age / 14 days)},
+ * so recent use dominates and the estimate follows seasonal shifts. That sum is updated in O(1) as
+ * {@link StockHistory} appends movements, and because it is associative a full {@link #recompute} folds
+ * the whole log in parallel on the fork-join pool.
+ */
+public final class ReorderForecaster {
+    /** Time constant of the rate average, in days. */
+    static final double DECAY_DAYS = 14;
+    /** Days between placing an order and stock arriving. */
+    static final int LEAD_TIME_DAYS = 7;
+    /** Extra days of demand kept on hand against forecast error. */
+    static final int SAFETY_DAYS = 3;
+    /** Days of demand one order should cover beyond the reorder point. */
+    static final int COVER_DAYS = 14;
+    /** Below this many units per day an item counts as not moving. */
+    private static final double MIN_DAILY_RATE = 0.01;
+    private static final long MICROS_PER_DAY = 86_400_000_000L;
+    /** Movements older than this weigh less than e^-10 and are skipped by {@link #recompute}. */
+    private static final long WINDOW_MICROS = (long) (10 * DECAY_DAYS * MICROS_PER_DAY);
+    /** How long a decayed rate is reused before {@link #forecast} decays it again; far below {@link #DECAY_DAYS}. */
+    private static final long RATE_REUSE_MILLIS = 60_000;
+
+    private final StockHistory history;
+    private final InventoryMetrics metrics = InventoryMetrics.global();
+    private volatile Map<UUID, Depletion> rates = new ConcurrentHashMap<>();
+
+    public ReorderForecaster(StockHistory history) {
+        this.history = history;
+        history.addObserver(this::record);
+    }
+
+    /**
+     * Rebuilds every rate from the history log.
+     */
+    public void recompute() {
+        long start = System.nanoTime();
+        long now = InventoryItem.toEpochMicros(LocalDateTime.now());
+        history.fold(now - WINDOW_MICROS, Fold::new, Fold::combine, fold -> rates = new ConcurrentHashMap<>(fold.rates));
+        metrics.recordTime("forecast.recompute", System.nanoTime() - start);
+        metrics.recordValue("forecast.items", rates.size());
+    }
+
+    private void record(long most, long least, long micros, int delta, int quantity) {
+        rates.compute(new UUID(most, least), (id, depletion) -> Depletion.plus(depletion, micros, delta));
+    }
+
+    /**
+     * Projection for {@code item}. Cheap enough to call per painted cell: the decayed rate is kept on the
+     * item's depletion until it is replaced by a movement or {@link #recompute}, or for a minute at most.
+     */
+    public Forecast forecast(InventoryItem item) {
+        Depletion depletion = rates.get(item.getId());
+        return new Forecast(item, depletion == null ? 0 : depletion.currentRate());
+    }
+
+    /**
+     * Items at or below their reorder point, soonest stock-out first.
+     */
+    public List<Forecast> reorderReport(InventoryManager manager) {
+        List<Forecast> due = new ArrayList<>();
+        for (UUID id : rates.keySet()) {
+            Optional<InventoryItem> item = manager.findById(id);
+            if (item.isPresent()) {
+                Forecast forecast = forecast(item.get());
+                if (forecast.isReorderDue()) {
+                    due.add(forecast);
+                }
+            }
+        }
+        due.sort(Comparator.comparingDouble(Forecast::getDaysOfStock).thenComparing(f -> f.getItem().getName(), String.CASE_INSENSITIVE_ORDER));
+        return due;
+    }
+
+    /**
+     * Projection for one item at the time it was computed.
+     */
+    public static final class Forecast {
+        private final InventoryItem item;
+        private final double dailyRate;
+
+        private Forecast(InventoryItem item, double dailyRate) {
+            this.item = item;
+            this.dailyRate = dailyRate;
+        }
+
+        public InventoryItem getItem() {
+            return item;
+        }
+
+        /**
+         * Units consumed per day; 0 for items that are not moving.
+         */
+        public double getDailyRate() {
+            return dailyRate;
+        }
+
+        /**
+         * Days until the item runs out; infinite when it is not moving.
+         */
+        public double getDaysOfStock() {
+            return dailyRate == 0 ? Double.POSITIVE_INFINITY : item.getQuantity() / dailyRate;
+        }
+
+        /**
+         * Projected stock-out date, or null when the item is not moving.
+         */
+        public LocalDate getStockOutDate() {
+            double days = getDaysOfStock();
+            return Double.isInfinite(days) || days > 36_500 ? null : LocalDate.now().plusDays((long) days);
+        }
+
+        public int getReorderPoint() {
+            return (int) Math.ceil(dailyRate * (LEAD_TIME_DAYS + SAFETY_DAYS));
+        }
+
+        /**
+         * Units to order now to cover lead time, safety stock and the cover period; 0 until the
+         * quantity falls to the reorder point.
+         */
+        public int getSuggestedOrder() {
+            if (dailyRate == 0 || item.getQuantity() > getReorderPoint()) {
+                return 0;
+            }
+            return Math.max(0, (int) Math.ceil(dailyRate * (LEAD_TIME_DAYS + SAFETY_DAYS + COVER_DAYS)) - item.getQuantity());
+        }
+
+        public boolean isReorderDue() {
+            return getSuggestedOrder() > 0;
+        }
+    }
+
+    /**
+     * Decayed consumption of one item as of {@code asOfMicros}, plus when its history starts.
+     */
+    private static final class Depletion {
+        private final double rate;
+        private final long asOfMicros;
+        private final long sinceMicros;
+        /** {@link #currentRate} as of {@code currentUntil}, in milliseconds; racing writers compute the same value. */
+        private volatile double current;
+        private volatile long currentUntil;
+
+        private Depletion(double rate, long asOfMicros, long sinceMicros) {
+            this.rate = rate;
+            this.asOfMicros = asOfMicros;
+            this.sinceMicros = sinceMicros;
+        }
+
+        static Depletion plus(Depletion depletion, long micros, int delta) {
+            double units = delta < 0 ? -delta / DECAY_DAYS : 0;
+            if (depletion == null) {
+                return new Depletion(units, micros, micros);
+            }
+            return combine(depletion, new Depletion(units, micros, micros));
+        }
+
+        static Depletion combine(Depletion a, Depletion b) {
+            long asOf = Math.max(a.asOfMicros, b.asOfMicros);
+            return new Depletion(a.rateAt(asOf, false) + b.rateAt(asOf, false), asOf, Math.min(a.sinceMicros, b.sinceMicros));
+        }
+
+        double rateAt(long micros) {
+            return rateAt(micros, true);
+        }
+
+        /**
+         * Warm rate now, or 0 below {@link #MIN_DAILY_RATE}, reused for {@link #RATE_REUSE_MILLIS}.
+         */
+        double currentRate() {
+            long millis = System.currentTimeMillis();
+            if (millis < currentUntil) {
+                return current;
+            }
+            double rate = rateAt(InventoryItem.toEpochMicros(LocalDateTime.now()));
+            current = rate < MIN_DAILY_RATE ? 0 : rate;
+            currentUntil = millis + RATE_REUSE_MILLIS;
+            return current;
+        }
+
+        /**
+         * Rate decayed to {@code micros}; when {@code warm}, scaled up for histories shorter than the decay
+         * window, which would otherwise read low.
+         */
+        private double rateAt(long micros, boolean warm) {
+            double decayed = rate * Math.exp(-Math.max(0, micros - asOfMicros) / (DECAY_DAYS * MICROS_PER_DAY));
+            if (!warm) {
+                return decayed;
+            }
+            double days = Math.max(1, (double) (micros - sinceMicros) / MICROS_PER_DAY);
+            return decayed / -Math.expm1(-days / DECAY_DAYS);
+        }
+    }
+
+    /**
+     * Rates of one run of the log during {@link #recompute}.
+     */
+    private static final class Fold implements StockHistory.Visitor {
+        private final Map<UUID, Depletion> rates = new HashMap<>();
+
+        @Override
+        public void visit(long most, long least, long micros, int delta, int quantity) {
+            rates.compute(new UUID(most, least), (id, depletion) -> Depletion.plus(depletion, micros, delta));
+        }
+
+        static Fold combine(Fold a, Fold b) {
+            Fold larger = a.rates.size() >= b.rates.size() ? a : b;
+            Fold smaller = larger == a ? b : a;
+            smaller.rates.forEach((id, depletion) -> larger.rates.merge(id, depletion, Depletion::combine));
+            return larger;
+        }
+    }
+}
@@ -0,0 +1,676 @@
+package com.codex.inventory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.OptionalInt;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Append-only log of every quantity change, partitioned by month.
+ * <p>
+ * Each movement is a fixed 32-byte record (item id, timestamp, delta, resulting quantity) appended to
+ * {@code history-YYYY-MM.log}. Timestamps never decrease within the log, so a time range is found by
+ * binary search in the partitions it overlaps. When a month ends its partition is sealed with a sidecar
+ * {@code .idx} file of record numbers sorted by item, so per-item questions read only that item's records
+ * however many years the log covers; the open month keeps the same index in memory.
+ * <p>
+ * Register it with {@link InventoryManager#addChangeListener} to record changes as they commit.
+ */
+public final class StockHistory implements InventoryChangeListener, AutoCloseable {
+    private static final int LOG_MAGIC = 0x49535448;
+    private static final int INDEX_MAGIC = 0x49534958;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 32;
+    private static final int INDEX_ENTRY_BYTES = 20;
+    private static final int READ_BLOCK_RECORDS = 4096;
+    private static final int FOLD_RUN_RECORDS = 1 << 15;
+    private static final String PREFIX = "history-";
+
+    private final Path directory;
+    private final InventoryMetrics metrics = InventoryMetrics.global();
+    private final NavigableMap<YearMonth, Partition> partitions = new TreeMap<>();
+    private final List<Visitor> observers = new CopyOnWriteArrayList<>();
+    private Partition active;
+    private long lastMicros = Long.MIN_VALUE;
+
+    private StockHistory(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the log in {@code directory}, creating it if needed. Earlier months missing their index (after a
+     * crash) are indexed now, and a torn record at the end of the open month is dropped.
+     */
+    public static StockHistory open(Path directory) {
+        StockHistory history = new StockHistory(directory);
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*.log")) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    try {
+                        YearMonth month = YearMonth.parse(name.substring(PREFIX.length(), name.length() - ".log".length()));
+                        history.partitions.put(month, new Partition(month, file));
+                    } catch (DateTimeParseException ex) {
+                        // Not one of ours.
+                    }
+                }
+            }
+            for (Partition partition : history.partitions.values()) {
+                partition.open(partition.month.equals(history.partitions.lastKey()));
+            }
+            if (!history.partitions.isEmpty()) {
+                history.active = history.partitions.lastEntry().getValue();
+                if (history.active.count > 0) {
+                    history.lastMicros = history.active.micros(history.active.count - 1);
+                }
+            }
+        } catch (IOException ex) {
+            history.close();
+            throw new IllegalStateException("Unable to open stock history in " + directory, ex);
+        }
+        return history;
+    }
+
+    @Override
+    public void inventoryChanged(List<InventoryChangeEvent> events) {
+        List<InventoryChangeEvent> movements = new ArrayList<>();
+        for (InventoryChangeEvent event : events) {
+            if (event.getType() == InventoryChangeEvent.Type.ITEM_ADDED
+                    || event.getType() == InventoryChangeEvent.Type.ITEM_REMOVED
+                    || event.getType() == InventoryChangeEvent.Type.ITEM_UPDATED && event.getQuantityDelta() != 0) {
+                movements.add(event);
+            }
+        }
+        if (!movements.isEmpty()) {
+            append(movements);
+        }
+    }
+
+    private synchronized void append(List<InventoryChangeEvent> events) {
+        long start = System.nanoTime();
+        ByteBuffer buffer = ByteBuffer.allocate(events.size() * RECORD_BYTES);
+        long now = InventoryItem.toEpochMicros(LocalDateTime.now());
+        try {
+            for (InventoryChangeEvent event : events) {
+                InventoryItem item = event.getCurrent() != null ? event.getCurrent() : event.getPrevious();
+                // Clamp so the log stays ordered even if the clock steps back or commits race.
+                long micros = Math.max(lastMicros, event.getCurrent() != null ? item.getUpdatedAtMicros() : now);
+                YearMonth month = YearMonth.from(InventoryItem.fromEpochMicros(micros));
+                if (active == null || !active.month.equals(month)) {
+                    write(buffer);
+                    roll(month);
+                }
+                buffer.putLong(item.getIdMostSigBits());
+                buffer.putLong(item.getIdLeastSigBits());
+                buffer.putLong(micros);
+                buffer.putInt(event.getQuantityDelta());
+                buffer.putInt(event.getCurrent() != null ? event.getCurrent().getQuantity() : 0);
+                active.track(item.getIdMostSigBits(), item.getIdLeastSigBits(), active.count + buffer.position() / RECORD_BYTES - 1);
+                lastMicros = micros;
+                for (Visitor observer : observers) {
+                    observer.visit(item.getIdMostSigBits(), item.getIdLeastSigBits(), micros, event.getQuantityDelta(),
+                            event.getCurrent() != null ? event.getCurrent().getQuantity() : 0);
+                }
+            }
+            write(buffer);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to append to stock history in " + directory, ex);
+        }
+        metrics.add("history.records", events.size());
+        metrics.recordTime("history.append", System.nanoTime() - start);
+    }
+
+    /**
+     * Every movement with a timestamp in [{@code from}, {@code to}), oldest first.
+     */
+    public synchronized List<Movement> movements(LocalDateTime from, LocalDateTime to) {
+        long start = System.nanoTime();
+        long fromMicros = InventoryItem.toEpochMicros(from);
+        long toMicros = InventoryItem.toEpochMicros(to);
+        List<Movement> result = new ArrayList<>();
+        try {
+            for (Partition partition : overlapping(from, to)) {
+                long first = partition.firstAtOrAfter(fromMicros);
+                ByteBuffer block = ByteBuffer.allocate(READ_BLOCK_RECORDS * RECORD_BYTES);
+                scan:
+                for (long i = first; i < partition.count; i += READ_BLOCK_RECORDS) {
+                    int records = (int) Math.min(READ_BLOCK_RECORDS, partition.count - i);
+                    partition.read(block, i, records);
+                    for (int r = 0; r < records; r++) {
+                        Movement movement = Movement.read(block);
+                        if (movement.micros >= toMicros) {
+                            break scan;
+                        }
+                        result.add(movement);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read stock history in " + directory, ex);
+        }
+        metrics.recordTime("history.rangeQuery", System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Movements of one item with a timestamp in [{@code from}, {@code to}), oldest first. Combine with
+     * {@link #quantityAt} for the level at the start of the range.
+     */
+    public synchronized List<Movement> movements(UUID id, LocalDateTime from, LocalDateTime to) {
+        long start = System.nanoTime();
+        long fromMicros = InventoryItem.toEpochMicros(from);
+        long toMicros = InventoryItem.toEpochMicros(to);
+        List<Movement> result = new ArrayList<>();
+        try {
+            for (Partition partition : overlapping(from, to)) {
+                for (long record : partition.recordsOf(id.getMostSignificantBits(), id.getLeastSignificantBits())) {
+                    Movement movement = partition.movement(record);
+                    if (movement.micros >= toMicros) {
+                        break;
+                    }
+                    if (movement.micros >= fromMicros) {
+                        result.add(movement);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read stock history in " + directory, ex);
+        }
+        metrics.recordTime("history.itemQuery", System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Quantity recorded for the item at {@code at}, or empty if the log has no earlier movement for it.
+     */
+    public synchronized OptionalInt quantityAt(UUID id, LocalDateTime at) {
+        long atMicros = InventoryItem.toEpochMicros(at);
+        try {
+            for (Partition partition : partitions.headMap(YearMonth.from(at), true).descendingMap().values()) {
+                long[] records = partition.recordsOf(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                for (int i = records.length - 1; i >= 0; i--) {
+                    Movement movement = partition.movement(records[i]);
+                    if (movement.micros <= atMicros) {
+                        return OptionalInt.of(movement.quantity);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read stock history in " + directory, ex);
+        }
+        return OptionalInt.empty();
+    }
+
+    /**
+     * Calls {@code observer} with each record as it is appended, in log order and under the log's lock.
+     */
+    void addObserver(Visitor observer) {
+        observers.add(observer);
+    }
+
+    /**
+     * Folds every movement since {@code fromMicros} on the common fork-join pool: the log is cut into runs,
+     * each run is visited in time order by a fresh visitor, and visitors are combined pairwise. Appends wait
+     * until {@code install} has taken the result, so an observer that swaps in the fold sees each movement
+     * exactly once.
+     */
+    synchronized <V extends Visitor> void fold(long fromMicros, Supplier<V> visitors, BinaryOperator<V> combiner, Consumer<V> install) {
+        List<Run> runs = new ArrayList<>();
+        try {
+            YearMonth first = YearMonth.from(InventoryItem.fromEpochMicros(fromMicros));
+            for (Partition partition : partitions.tailMap(first, true).values()) {
+                for (long i = partition.firstAtOrAfter(fromMicros); i < partition.count; i += FOLD_RUN_RECORDS) {
+                    runs.add(new Run(partition, i, (int) Math.min(FOLD_RUN_RECORDS, partition.count - i)));
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read stock history in " + directory, ex);
+        }
+        install.accept(runs.isEmpty() ? visitors.get() : ForkJoinPool.commonPool().invoke(new FoldTask<>(runs, 0, runs.size(), visitors, combiner)));
+    }
+
+    /**
+     * Forces appended records to disk.
+     */
+    public synchronized void flush() {
+        if (active != null) {
+            try {
+                active.channel.force(false);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Unable to flush stock history in " + directory, ex);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        IOException failure = null;
+        for (Partition partition : partitions.values()) {
+            try {
+                partition.close();
+            } catch (IOException ex) {
+                failure = ex;
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Unable to close stock history in " + directory, failure);
+        }
+    }
+
+    private Iterable<Partition> overlapping(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return Collections.emptyList();
+        }
+        YearMonth first = YearMonth.from(from);
+        YearMonth last = YearMonth.from(to);
+        return partitions.subMap(first, true, last, true).values();
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            active.channel.write(buffer, HEADER_BYTES + active.count * RECORD_BYTES);
+            active.count = (active.channel.size() - HEADER_BYTES) / RECORD_BYTES;
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Seals the open month and starts {@code month}.
+     */
+    private void roll(YearMonth month) throws IOException {
+        if (active != null) {
+            active.seal();
+        }
+        Partition partition = new Partition(month, directory.resolve(PREFIX + month + ".log"));
+        partition.open(true);
+        partitions.put(month, partition);
+        active = partition;
+    }
+
+    /**
+     * Receives raw records without allocating a {@link Movement} each.
+     */
+    interface Visitor {
+        void visit(long idMostSigBits, long idLeastSigBits, long micros, int delta, int quantity);
+    }
+
+    /**
+     * Consecutive records of one partition.
+     */
+    private static final class Run {
+        private final Partition partition;
+        private final long first;
+        private final int records;
+
+        Run(Partition partition, long first, int records) {
+            this.partition = partition;
+            this.first = first;
+            this.records = records;
+        }
+    }
+
+    private static final class FoldTask<V extends Visitor> extends RecursiveTask<V> {
+        private final List<Run> runs;
+        private final int from;
+        private final int to;
+        private final Supplier<V> visitors;
+        private final BinaryOperator<V> combiner;
+
+        FoldTask(List<Run> runs, int from, int to, Supplier<V> visitors, BinaryOperator<V> combiner) {
+            this.runs = runs;
+            this.from = from;
+            this.to = to;
+            this.visitors = visitors;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected V compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                FoldTask<V> left = new FoldTask<>(runs, from, mid, visitors, combiner);
+                left.fork();
+                V right = new FoldTask<>(runs, mid, to, visitors, combiner).compute();
+                return combiner.apply(left.join(), right);
+            }
+            Run run = runs.get(from);
+            V visitor = visitors.get();
+            ByteBuffer block = ByteBuffer.allocate(READ_BLOCK_RECORDS * RECORD_BYTES);
+            try {
+                for (int i = 0; i < run.records; i += READ_BLOCK_RECORDS) {
+                    int records = Math.min(READ_BLOCK_RECORDS, run.records - i);
+                    run.partition.read(block, run.first + i, records);
+                    for (int r = 0; r < records; r++) {
+                        visitor.visit(block.getLong(), block.getLong(), block.getLong(), block.getInt(), block.getInt());
+                    }
+                }
+            } catch (IOException ex) {
+                throw new IllegalStateException("Unable to read stock history partition " + run.partition.log, ex);
+            }
+            return visitor;
+        }
+    }
+
+    /**
+     * One change to an item's quantity.
+     */
+    public static final class Movement {
+        private final long idMostSigBits;
+        private final long idLeastSigBits;
+        private final long micros;
+        private final int delta;
+        private final int quantity;
+
+        private Movement(long idMostSigBits, long idLeastSigBits, long micros, int delta, int quantity) {
+            this.idMostSigBits = idMostSigBits;
+            this.idLeastSigBits = idLeastSigBits;
+            this.micros = micros;
+            this.delta = delta;
+            this.quantity = quantity;
+        }
+
+        private static Movement read(ByteBuffer buffer) {
+            return new Movement(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getInt(), buffer.getInt());
+        }
+
+        public UUID getItemId() {
+            return new UUID(idMostSigBits, idLeastSigBits);
+        }
+
+        public LocalDateTime getTimestamp() {
+            return InventoryItem.fromEpochMicros(micros);
+        }
+
+        long getTimestampMicros() {
+            return micros;
+        }
+
+        /**
+         * Change in quantity; negative for consumption and removal.
+         */
+        public int getDelta() {
+            return delta;
+        }
+
+        /**
+         * Quantity after the change; 0 once the item was removed.
+         */
+        public int getQuantity() {
+            return quantity;
+        }
+
+        @Override
+        public String toString() {
+            return getTimestamp() + " " + getItemId() + " " + (delta >= 0 ? "+" : "") + delta + " = " + quantity;
+        }
+    }
+
+    /**
+     * One month of the log. The open month indexes its records by item in memory; sealed months read the
+     * sidecar index instead.
+     */
+    private static final class Partition {
+        private final YearMonth month;
+        private final Path log;
+        private final Path index;
+        private FileChannel channel;
+        private FileChannel indexChannel;
+        private long count;
+        private long indexCount;
+        private Map<UUID, Records> positions;
+
+        Partition(YearMonth month, Path log) {
+            this.month = month;
+            this.log = log;
+            this.index = log.resolveSibling(PREFIX + month + ".idx");
+        }
+
+        void open(boolean writable) throws IOException {
+            channel = writable
+                    ? FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(log, StandardOpenOption.READ);
+            if (channel.size() < HEADER_BYTES) {
+                if (!writable) {
+                    throw new IOException("Truncated history partition " + log);
+                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(LOG_MAGIC).putInt(FORMAT_VERSION).putLong(0);
+                header.flip();
+                channel.write(header, 0);
+            }
+            ByteBuffer header = ByteBuffer.allocate(8);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != LOG_MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a stock history partition: " + log);
+            }
+            count = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+            if (writable) {
+                channel.truncate(HEADER_BYTES + count * RECORD_BYTES);
+                positions = new HashMap<>();
+                scanPositions();
+            } else if (!openIndex()) {
+                positions = new HashMap<>();
+                scanPositions();
+                writeIndex();
+                positions = null;
+                openIndex();
+            }
+        }
+
+        void track(long most, long least, long record) {
+            positions.computeIfAbsent(new UUID(most, least), id -> new Records()).add(record);
+        }
+
+        void seal() throws IOException {
+            channel.force(false);
+            writeIndex();
+            positions = null;
+            channel.close();
+            channel = FileChannel.open(log, StandardOpenOption.READ);
+            openIndex();
+        }
+
+        void close() throws IOException {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } finally {
+                if (indexChannel != null) {
+                    indexChannel.close();
+                }
+            }
+        }
+
+        long micros(long record) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            readFully(channel, buffer, HEADER_BYTES + record * RECORD_BYTES + 16);
+            return buffer.getLong(0);
+        }
+
+        Movement movement(long record) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES);
+            readFully(channel, buffer, HEADER_BYTES + record * RECORD_BYTES);
+            buffer.flip();
+            return Movement.read(buffer);
+        }
+
+        void read(ByteBuffer block, long first, int records) throws IOException {
+            block.clear().limit(records * RECORD_BYTES);
+            readFully(channel, block, HEADER_BYTES + first * RECORD_BYTES);
+            block.flip();
+        }
+
+        /**
+         * First record whose timestamp is at or after {@code micros}.
+         */
+        long firstAtOrAfter(long micros) throws IOException {
+            long low = 0;
+            long high = count;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (micros(mid) < micros) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Record numbers of the item in time order.
+         */
+        long[] recordsOf(long most, long least) throws IOException {
+            if (positions != null) {
+                Records records = positions.get(new UUID(most, least));
+                return records == null ? new long[0] : Arrays.copyOf(records.values, records.size);
+            }
+            long low = 0;
+            long high = indexCount;
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                readEntry(entry, mid);
+                int order = compare(entry.getLong(0), entry.getLong(8), most, least);
+                if (order < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            List<Long> records = new ArrayList<>();
+            for (long i = low; i < indexCount; i++) {
+                readEntry(entry, i);
+                if (entry.getLong(0) != most || entry.getLong(8) != least) {
+                    break;
+                }
+                records.add(entry.getInt(16) & 0xFFFFFFFFL);
+            }
+            return records.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        private void readEntry(ByteBuffer entry, long i) throws IOException {
+            entry.clear();
+            readFully(indexChannel, entry, HEADER_BYTES + i * INDEX_ENTRY_BYTES);
+        }
+
+        private void scanPositions() throws IOException {
+            ByteBuffer block = ByteBuffer.allocate(READ_BLOCK_RECORDS * RECORD_BYTES);
+            for (long i = 0; i < count; i += READ_BLOCK_RECORDS) {
+                int records = (int) Math.min(READ_BLOCK_RECORDS, count - i);
+                read(block, i, records);
+                for (int r = 0; r < records; r++) {
+                    track(block.getLong(r * RECORD_BYTES), block.getLong(r * RECORD_BYTES + 8), i + r);
+                }
+            }
+        }
+
+        private boolean openIndex() throws IOException {
+            if (!Files.exists(index)) {
+                return false;
+            }
+            indexChannel = FileChannel.open(index, StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            indexChannel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != INDEX_MAGIC || header.getInt() != FORMAT_VERSION
+                    || header.getLong() != count) {
+                // Stale or torn; rebuild from the log.
+                indexChannel.close();
+                indexChannel = null;
+                return false;
+            }
+            indexCount = count;
+            return true;
+        }
+
+        /**
+         * Writes the item index atomically: entries sorted by id, then record number.
+         */
+        private void writeIndex() throws IOException {
+            List<UUID> ids = new ArrayList<>(positions.keySet());
+            ids.sort((a, b) -> compare(a.getMostSignificantBits(), a.getLeastSignificantBits(), b.getMostSignificantBits(), b.getLeastSignificantBits()));
+            Path temp = index.resolveSibling(index.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                buffer.putInt(INDEX_MAGIC).putInt(FORMAT_VERSION).putLong(count);
+                for (UUID id : ids) {
+                    Records records = positions.get(id);
+                    for (int i = 0; i < records.size; i++) {
+                        long record = records.values[i];
+                        if (buffer.remaining() < INDEX_ENTRY_BYTES) {
+                            buffer.flip();
+                            while (buffer.hasRemaining()) {
+                                out.write(buffer);
+                            }
+                            buffer.clear();
+                        }
+                        buffer.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).putInt((int) record);
+                    }
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(false);
+            }
+            Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+
+        private static int compare(long mostA, long leastA, long mostB, long leastB) {
+            int order = Long.compare(mostA, mostB);
+            return order != 0 ? order : Long.compare(leastA, leastB);
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+            }
+        }
+    }
+
+    /**
+     * Record numbers of one item in the open month, in append order.
+     */
+    private static final class Records {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long record) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = record;
+        }
+    }
+}
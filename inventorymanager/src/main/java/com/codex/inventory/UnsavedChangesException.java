@@ -0,0 +1,11 @@
+package com.codex.inventory;
+
+/**
+ * Thrown when a change was applied in memory, and delivered to listeners, but saving it failed. Unlike other
+ * failures the change must not be made again: it stays in the inventory and the next successful save writes it.
+ */
+public final class UnsavedChangesException extends IllegalStateException {
+    UnsavedChangesException(RuntimeException cause) {
+        super("Changes are applied but could not be saved: " + cause.getMessage(), cause);
+    }
+}